@@ -0,0 +1,189 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline decoder for files written by BinaryLogAppender.
+ *
+ * Streams the records of BinaryLogFormat and prints every event in the
+ * "[yyyy-MM-dd HH:mm:ss.SSS] [LEVEL] message" layout of SimpleFormatter, with the
+ * template placeholders filled in from the stored arguments. A record cut off by a
+ * crash at the end of the file is skipped, and its size is available from
+ * truncatedBytes() afterwards.
+ */
+public class BinaryLogDecoder {
+    private static final int READ_SIZE = 1 << 20;
+    private static final int MAX_LENGTH_PREFIX = 5;
+
+    private final Formatter formatter = new GarbageFreeFormatter();
+    private final List<String> templates = new ArrayList<>();
+    private final StringBuilder line = new StringBuilder(256);
+    private long lastTimestampMillis;
+    private int truncatedBytes;
+
+    // Usage: java BinaryLogDecoder <binary-log> [text-output]
+    // Without an output file the text is written to standard output.
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java BinaryLogDecoder <binary-log> [text-output]");
+            System.exit(2);
+        }
+        Writer out = args.length > 1
+                ? Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (Writer writer = out) {
+            BinaryLogDecoder decoder = new BinaryLogDecoder();
+            long events = decoder.decode(Paths.get(args[0]), writer);
+            if (decoder.truncatedBytes() > 0) {
+                System.err.println("Skipped a truncated record of " + decoder.truncatedBytes() + " bytes at the end");
+            }
+            System.err.println("Decoded " + events + " events");
+        }
+    }
+
+    /**
+     * Writes every event of the binary log to the writer, one line each.
+     *
+     * @return The number of events decoded.
+     */
+    public long decode(Path binaryLog, Writer out) throws IOException {
+        long events = 0;
+        truncatedBytes = 0;
+        try (FileChannel channel = FileChannel.open(binaryLog, StandardOpenOption.READ)) {
+            ByteBuffer in = ByteBuffer.allocate(READ_SIZE).flip();
+            boolean endOfFile = false;
+            while (true) {
+                int start = in.position();
+                int length = recordLength(in);
+                if (length >= 0 && in.remaining() >= length) {
+                    if (decodeRecord(in.slice(in.position(), length), out)) {
+                        events++;
+                    }
+                    in.position(in.position() + length);
+                    continue;
+                }
+                // The record continues past what has been read so far
+                in.position(start);
+                if (endOfFile) {
+                    truncatedBytes = in.remaining();
+                    return events;
+                }
+                if (length + MAX_LENGTH_PREFIX > in.capacity()) {
+                    in = ByteBuffer.allocate(length + MAX_LENGTH_PREFIX).put(in);
+                } else {
+                    in.compact();
+                }
+                endOfFile = channel.read(in) < 0;
+                in.flip();
+            }
+        }
+    }
+
+    /**
+     * Size of the incomplete record the last decode() skipped at the end of the file,
+     * 0 if the file ended cleanly.
+     */
+    public int truncatedBytes() {
+        return truncatedBytes;
+    }
+
+    // Reads the varint length prefix, or returns -1 if it isn't complete in the buffer yet
+    private static int recordLength(ByteBuffer in) {
+        for (int i = in.position(); i < in.limit() && i < in.position() + MAX_LENGTH_PREFIX; i++) {
+            if (in.get(i) >= 0) {
+                return (int) BinaryLogFormat.getVarLong(in);
+            }
+        }
+        return -1;
+    }
+
+    // Returns true if the record was a log event that was written out
+    private boolean decodeRecord(ByteBuffer body, Writer out) throws IOException {
+        byte type = body.get();
+        switch (type) {
+            case BinaryLogFormat.SESSION:
+                if (body.getInt() != BinaryLogFormat.MAGIC) {
+                    throw new IOException("Not a binary log file");
+                }
+                byte version = body.get();
+                if (version < 1 || version > BinaryLogFormat.VERSION) {
+                    throw new IOException("Unsupported binary log version");
+                }
+                // A new run of the writer starts with fresh templates and timestamps
+                templates.clear();
+                lastTimestampMillis = 0;
+                return false;
+            case BinaryLogFormat.TEMPLATE: {
+                int id = (int) BinaryLogFormat.getVarLong(body);
+                String template = StandardCharsets.UTF_8.decode(body).toString();
+                while (templates.size() <= id) {
+                    templates.add(null);
+                }
+                templates.set(id, template);
+                return false;
+            }
+            case BinaryLogFormat.EVENT: {
+                LogLevel level = LogLevel.values()[body.get()];
+                long timestampMillis = nextTimestamp(body);
+                String template = templates.get((int) BinaryLogFormat.getVarLong(body));
+                Object[] args = new Object[body.get() & 0xFF];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readArgument(body);
+                }
+                writeLine(level, MessageTemplate.format(template, args), timestampMillis, out);
+                return true;
+            }
+            case BinaryLogFormat.MESSAGE: {
+                LogLevel level = LogLevel.values()[body.get()];
+                long timestampMillis = nextTimestamp(body);
+                writeLine(level, StandardCharsets.UTF_8.decode(body).toString(), timestampMillis, out);
+                return true;
+            }
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    private long nextTimestamp(ByteBuffer body) {
+        lastTimestampMillis += BinaryLogFormat.getVarLong(body);
+        return lastTimestampMillis;
+    }
+
+    private static Object readArgument(ByteBuffer body) throws IOException {
+        byte tag = body.get();
+        switch (tag) {
+            case BinaryLogFormat.ARG_NULL:
+                return null;
+            case BinaryLogFormat.ARG_LONG:
+                return BinaryLogFormat.getVarLong(body);
+            case BinaryLogFormat.ARG_DOUBLE:
+                return body.getDouble();
+            case BinaryLogFormat.ARG_FLOAT:
+                return body.getFloat();
+            case BinaryLogFormat.ARG_STRING: {
+                int length = (int) BinaryLogFormat.getVarLong(body);
+                String text = StandardCharsets.UTF_8.decode(body.slice(body.position(), length)).toString();
+                body.position(body.position() + length);
+                return text;
+            }
+            default:
+                throw new IOException("Unknown argument tag " + tag);
+        }
+    }
+
+    private void writeLine(LogLevel level, String message, long timestampMillis, Writer out) throws IOException {
+        line.setLength(0);
+        formatter.formatTo(level, message, timestampMillis, line);
+        out.append(line).append(System.lineSeparator());
+    }
+}
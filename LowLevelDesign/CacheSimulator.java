@@ -0,0 +1,366 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+/**
+ * Trace-driven eviction policy simulator.
+ *
+ * Replays a recorded key trace through LFUCache and alternative policies, at many
+ * capacities at once, and reports the hit ratio of every (policy, capacity) pair.
+ * The trace is streamed from the file in chunks and read only once. Each chunk is
+ * replayed through all simulated caches in parallel while the next chunk is read.
+ *
+ * Trace format: one key per line. Numeric keys are used as-is, anything else is hashed.
+ */
+class CacheSimulator {
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final Map<String, IntFunction<EvictionPolicy>> policies = new LinkedHashMap<>();
+
+    // Register a policy under a name, built once per simulated capacity
+    public CacheSimulator addPolicy(String name, IntFunction<EvictionPolicy> factory) {
+        policies.put(name, factory);
+        return this;
+    }
+
+    // The default lineup: LRU, LFU (with and without ageing), ARC and TinyLFU
+    public static CacheSimulator withDefaultPolicies() {
+        return new CacheSimulator()
+                .addPolicy("LRU", LRUPolicy::new)
+                .addPolicy("LFU", capacity -> new LFUPolicy(new LFUCache(capacity)))
+                .addPolicy("LFU+aging", capacity -> new LFUPolicy(new LFUCache(capacity, false, 10 * capacity)))
+                .addPolicy("ARC", ARCPolicy::new)
+                .addPolicy("TinyLFU", capacity -> new LFUPolicy(new LFUCache(capacity, true, 10 * capacity)));
+    }
+
+    // Replay the trace once through every policy at every capacity.
+    // Returns policy name -> hit ratio per capacity, in the order of `capacities`.
+    public Map<String, double[]> run(Path trace, int[] capacities) throws IOException {
+        List<Run> runs = new ArrayList<>();
+        for (Map.Entry<String, IntFunction<EvictionPolicy>> policy : policies.entrySet()) {
+            for (int column = 0; column < capacities.length; column++) {
+                runs.add(new Run(policy.getKey(), column, policy.getValue().apply(capacities[column])));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try (BufferedReader reader = Files.newBufferedReader(trace, StandardCharsets.UTF_8)) {
+            int[] chunk = new int[CHUNK_SIZE];
+            int[] nextChunk = new int[CHUNK_SIZE];
+            int length = readChunk(reader, chunk);
+            while (length > 0) {
+                // Replay this chunk everywhere while the next one is being read
+                List<CompletableFuture<Void>> replays = new ArrayList<>(runs.size());
+                int[] keys = chunk;
+                int count = length;
+                for (Run run : runs) {
+                    replays.add(CompletableFuture.runAsync(() -> run.replay(keys, count), pool));
+                }
+                length = readChunk(reader, nextChunk);
+                CompletableFuture.allOf(replays.toArray(new CompletableFuture<?>[0])).join();
+
+                int[] swap = chunk;
+                chunk = nextChunk;
+                nextChunk = swap;
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<String, double[]> hitRatios = new LinkedHashMap<>();
+        for (String name : policies.keySet()) {
+            hitRatios.put(name, new double[capacities.length]);
+        }
+        for (Run run : runs) {
+            hitRatios.get(run.policyName)[run.column] = run.hitRatio();
+        }
+        return hitRatios;
+    }
+
+    private static int readChunk(BufferedReader reader, int[] chunk) throws IOException {
+        int length = 0;
+        String line;
+        while (length < chunk.length && (line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                chunk[length++] = toKey(line);
+            }
+        }
+        return length;
+    }
+
+    private static int toKey(String token) {
+        try {
+            long key = Long.parseLong(token);
+            return (int) (key ^ (key >>> 32));
+        } catch (NumberFormatException e) {
+            return token.hashCode();
+        }
+    }
+
+    // One simulated cache, only ever touched by one thread at a time
+    private static final class Run {
+        final String policyName;
+        final int column;  // index into `capacities`, which may repeat a value
+        final EvictionPolicy policy;
+        long hits;
+        long requests;
+
+        Run(String policyName, int column, EvictionPolicy policy) {
+            this.policyName = policyName;
+            this.column = column;
+            this.policy = policy;
+        }
+
+        void replay(int[] keys, int count) {
+            for (int i = 0; i < count; i++) {
+                if (policy.access(keys[i])) {
+                    hits++;
+                }
+            }
+            requests += count;
+        }
+
+        double hitRatio() {
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+}
+
+/**
+ * A cache replacement policy as seen by the simulator: record an access and report
+ * whether it was a hit. On a miss the policy decides whether and what to evict.
+ */
+interface EvictionPolicy {
+    boolean access(int key);
+}
+
+/**
+ * LFUCache in any configuration (plain, ageing, TinyLFU admission).
+ */
+class LFUPolicy implements EvictionPolicy {
+    private final LFUCache cache;
+
+    LFUPolicy(LFUCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public boolean access(int key) {
+        if (cache.get(key) != -1) {
+            return true;
+        }
+        cache.putAfterMiss(key, 0);  // the get already counted this request
+        return false;
+    }
+}
+
+/**
+ * Plain LRU, built on the DoublyLinkedList from LFU.java: most recent at the head,
+ * evict from the tail.
+ */
+class LRUPolicy implements EvictionPolicy {
+    private final int capacity;
+    private final Map<Integer, Node> index = new HashMap<>();
+    private final DoublyLinkedList list = new DoublyLinkedList();
+
+    LRUPolicy(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public boolean access(int key) {
+        Node node = index.get(key);
+        if (node != null) {
+            list.removeNode(node);
+            list.addNode(node);
+            return true;
+        }
+        if (capacity == 0) {
+            return false;
+        }
+        if (index.size() == capacity) {
+            index.remove(list.removeTail().key);
+        }
+        node = new Node(key, 0);
+        list.addNode(node);
+        index.put(key, node);
+        return false;
+    }
+}
+
+/**
+ * Adaptive Replacement Cache (Megiddo and Modha). T1 holds keys seen once recently,
+ * T2 keys seen at least twice. B1 and B2 remember keys recently evicted from each,
+ * and a hit in a ghost list shifts the target size p towards the list that would
+ * have kept it. Lists are LinkedHashSets in LRU -> MRU iteration order.
+ */
+class ARCPolicy implements EvictionPolicy {
+    private final int capacity;
+    private int p;  // target size of T1
+    private final LinkedHashSet<Integer> t1 = new LinkedHashSet<>();
+    private final LinkedHashSet<Integer> t2 = new LinkedHashSet<>();
+    private final LinkedHashSet<Integer> b1 = new LinkedHashSet<>();
+    private final LinkedHashSet<Integer> b2 = new LinkedHashSet<>();
+
+    ARCPolicy(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public boolean access(int key) {
+        if (capacity == 0) {
+            return false;
+        }
+        // Cache hit: promote to MRU of T2
+        if (t1.remove(key) || t2.remove(key)) {
+            t2.add(key);
+            return true;
+        }
+
+        if (b1.contains(key)) {
+            // Recency list was too small
+            p = Math.min(capacity, p + Math.max(1, b2.size() / b1.size()));
+            replace(false);
+            b1.remove(key);
+            t2.add(key);
+            return false;
+        }
+        if (b2.contains(key)) {
+            // Frequency list was too small
+            p = Math.max(0, p - Math.max(1, b1.size() / b2.size()));
+            replace(true);
+            b2.remove(key);
+            t2.add(key);
+            return false;
+        }
+
+        // Complete miss
+        int l1 = t1.size() + b1.size();
+        if (l1 == capacity) {
+            if (t1.size() < capacity) {
+                removeOldest(b1);
+                replace(false);
+            } else {
+                removeOldest(t1);
+            }
+        } else {
+            int total = l1 + t2.size() + b2.size();
+            if (total >= capacity) {
+                if (total == 2 * capacity) {
+                    removeOldest(b2);
+                }
+                replace(false);
+            }
+        }
+        t1.add(key);
+        return false;
+    }
+
+    // Evict from T1 or T2 into its ghost list depending on the target p
+    private void replace(boolean hitInB2) {
+        if (!t1.isEmpty() && (t1.size() > p || (hitInB2 && t1.size() == p))) {
+            b1.add(removeOldest(t1));
+        } else if (!t2.isEmpty()) {
+            b2.add(removeOldest(t2));
+        } else if (!t1.isEmpty()) {
+            b1.add(removeOldest(t1));
+        }
+    }
+
+    private static Integer removeOldest(LinkedHashSet<Integer> list) {
+        Iterator<Integer> iterator = list.iterator();
+        Integer oldest = iterator.next();
+        iterator.remove();
+        return oldest;
+    }
+}
+
+public class CacheSimulatorDemo {
+    // Usage: java CacheSimulatorDemo [trace-file] [min-capacity] [max-capacity] [points]
+    // Without a trace file a synthetic Zipf trace with a scan in the middle is used.
+    public static void main(String[] args) throws IOException {
+        Path trace;
+        if (args.length > 0) {
+            trace = Paths.get(args[0]);
+        } else {
+            trace = Files.createTempFile("cache-trace", ".txt");
+            trace.toFile().deleteOnExit();
+            writeSyntheticTrace(trace, 2_000_000, 100_000);
+        }
+        int minCapacity = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int maxCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 25_600;
+        int points = args.length > 3 ? Integer.parseInt(args[3]) : 9;
+
+        // Capacities spaced geometrically between min and max
+        int[] capacities = new int[points];
+        for (int i = 0; i < points; i++) {
+            double step = points == 1 ? 0 : (double) i / (points - 1);
+            capacities[i] = (int) Math.round(minCapacity * Math.pow((double) maxCapacity / minCapacity, step));
+        }
+
+        Map<String, double[]> hitRatios = CacheSimulator.withDefaultPolicies().run(trace, capacities);
+
+        StringBuilder header = new StringBuilder(String.format("%-10s", "capacity"));
+        for (String policy : hitRatios.keySet()) {
+            header.append(String.format("%12s", policy));
+        }
+        System.out.println(header);
+        for (int i = 0; i < capacities.length; i++) {
+            StringBuilder row = new StringBuilder(String.format("%-10d", capacities[i]));
+            for (double[] curve : hitRatios.values()) {
+                row.append(String.format("%12.4f", curve[i]));
+            }
+            System.out.println(row);
+        }
+    }
+
+    private static void writeSyntheticTrace(Path trace, int length, int keySpace) throws IOException {
+        double[] cdf = new double[keySpace];
+        double sum = 0;
+        for (int rank = 0; rank < keySpace; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, 0.9);
+            cdf[rank] = sum;
+        }
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(trace, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < length; i++) {
+                long key;
+                if (i > length / 2 && i < length / 2 + length / 10) {
+                    key = 1_000_000L + i;  // One-off scan
+                } else {
+                    double u = random.nextDouble() * sum;
+                    int low = 0;
+                    int high = keySpace - 1;
+                    while (low < high) {
+                        int mid = (low + high) >>> 1;
+                        if (cdf[mid] < u) {
+                            low = mid + 1;
+                        } else {
+                            high = mid;
+                        }
+                    }
+                    key = low;
+                }
+                writer.write(Long.toString(key));
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe LFU cache for concurrent request handlers.
+ *
+ * Keys are spread across independently locked segments. Each segment is a plain
+ * LFUCache (its own cache map and chain of frequency buckets, whose first bucket
+ * holds the least frequent keys) guarded by its own lock, so threads working on keys
+ * in different segments never contend with each other.
+ *
+ * Eviction is per segment: when a segment is full it evicts its own least frequent
+ * key, which is an approximation of global LFU that gets closer as keys hash evenly.
+ */
+class ConcurrentLFUCache {
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    public ConcurrentLFUCache(int capacity) {
+        this(capacity, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public ConcurrentLFUCache(int capacity, int concurrencyLevel) {
+        if (capacity < 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("capacity must be >= 0 and concurrencyLevel > 0");
+        }
+
+        // Round up to a power of two so the segment can be picked with a mask,
+        // but never create more segments than there are slots to hand out
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount * 2 <= Math.max(1, capacity)) {
+            segmentCount <<= 1;
+        }
+
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+
+        // Split capacity evenly, handing the remainder out one slot at a time
+        int perSegment = capacity / segmentCount;
+        int remainder = capacity % segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(perSegment + (i < remainder ? 1 : 0));
+        }
+    }
+
+    // Get the value from cache and update its frequency, -1 if the key is absent
+    public int get(int key) {
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            return segment.cache.get(key);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    // Put a new key-value pair or update existing key
+    public void put(int key, int value) {
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            segment.cache.put(key, value);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    // Start collecting statistics, shared by every segment
+    public LFUCacheStats recordStats() {
+        LFUCacheStats stats = new LFUCacheStats();
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.cache.recordStats(stats);
+            } finally {
+                segment.unlock();
+            }
+        }
+        return stats;
+    }
+
+    // Snapshot of how many keys sit at each frequency, summed over all segments
+    public Map<Integer, Integer> frequencyDistribution() {
+        Map<Integer, Integer> distribution = new TreeMap<>();
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                for (Map.Entry<Integer, Integer> bucket : segment.cache.frequencyDistribution().entrySet()) {
+                    distribution.merge(bucket.getKey(), bucket.getValue(), Integer::sum);
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        return distribution;
+    }
+
+    private Segment segmentFor(int key) {
+        // Spread the bits so sequential keys don't all land in neighbouring segments
+        int h = key * 0x9E3779B9;
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    // One independently locked slice of the key space
+    private static final class Segment extends ReentrantLock {
+        final LFUCache cache;
+
+        Segment(int capacity) {
+            this.cache = new LFUCache(capacity);
+        }
+    }
+}
+
+public class ConcurrentLFUDemo {
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentLFUCache cache = new ConcurrentLFUCache(1024);
+        LFUCacheStats stats = cache.recordStats();
+
+        // Same single-threaded contract as LFUCache
+        cache.put(1, 1);
+        cache.put(2, 2);
+        System.out.println(cache.get(1));  // Returns 1
+        System.out.println(cache.get(5));  // Returns -1 (absent)
+
+        // Mixed read/write workload from several request threads
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 100_000; i++) {
+                    int key = random.nextInt(4096);
+                    if (cache.get(key) == -1) {
+                        cache.put(key, key);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.println(stats);
+    }
+}
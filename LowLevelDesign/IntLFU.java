@@ -0,0 +1,279 @@
+import java.util.Arrays;
+
+/**
+ * Primitive int -> int LFU cache.
+ *
+ * Same contract as LFUCache (get returns -1 on a miss), but there is no boxing and no
+ * object per entry. Everything lives in parallel int arrays allocated once up front:
+ *
+ *  - Entries occupy slots [0, capacity). keys/values/entryBucket/entryPrev/entryNext
+ *    are indexed by slot, and entryPrev/entryNext link a slot into its frequency list.
+ *  - An open-addressing table (linear probing, backward-shift delete) maps key -> slot.
+ *  - Frequency buckets are also slots in parallel arrays, chained in increasing
+ *    frequency order, so the first bucket in the chain is always minFreq.
+ *
+ * Steady-state get/put allocates nothing.
+ */
+class IntLFUCache {
+    private static final int NIL = -1;
+    private static final int EMPTY = -1;
+
+    private final int capacity;
+    private int size;
+
+    // Entry slots
+    private final int[] keys;
+    private final int[] values;
+    private final int[] entryBucket;
+    private final int[] entryPrev;
+    private final int[] entryNext;
+
+    // key -> slot index, EMPTY when the cell is free
+    private final int[] table;
+    private final int tableMask;
+
+    // Frequency buckets, chained lowest -> highest frequency
+    private final int[] bucketFreq;
+    private final int[] bucketHead;   // most recently used entry in the bucket
+    private final int[] bucketTail;   // least recently used entry in the bucket
+    private final int[] bucketPrev;
+    private final int[] bucketNext;
+    private int firstBucket = NIL;    // bucket holding minFreq
+    private int freeBucket = NIL;     // stack of recycled buckets, linked through bucketNext
+
+    public IntLFUCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be >= 0");
+        }
+        this.capacity = capacity;
+
+        keys = new int[capacity];
+        values = new int[capacity];
+        entryBucket = new int[capacity];
+        entryPrev = new int[capacity];
+        entryNext = new int[capacity];
+
+        // Keep the load factor at or below 0.5 so probe sequences stay short
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        table = new int[tableSize];
+        tableMask = tableSize - 1;
+        Arrays.fill(table, EMPTY);
+
+        // A non-empty bucket holds at least one entry, plus one spare for the bucket a
+        // promotion creates before the entry leaves its old one
+        int bucketCount = capacity + 1;
+        bucketFreq = new int[bucketCount];
+        bucketHead = new int[bucketCount];
+        bucketTail = new int[bucketCount];
+        bucketPrev = new int[bucketCount];
+        bucketNext = new int[bucketCount];
+        for (int b = 0; b < bucketCount; b++) {
+            bucketNext[b] = freeBucket;
+            freeBucket = b;
+        }
+    }
+
+    // Get the value from cache and update its frequency
+    public int get(int key) {
+        int slot = findSlot(key);
+        if (slot == NIL) {
+            return -1;
+        }
+        updateFrequency(slot);
+        return values[slot];
+    }
+
+    // Put a new key-value pair or update existing key
+    public void put(int key, int value) {
+        if (capacity == 0) {
+            return;  // If capacity is 0, no items can be added
+        }
+
+        int slot = findSlot(key);
+        if (slot != NIL) {
+            values[slot] = value;
+            updateFrequency(slot);
+            return;
+        }
+
+        // Reuse the evicted slot once the cache is full, otherwise take the next fresh one
+        slot = (size == capacity) ? evict() : size++;
+        keys[slot] = key;
+        values[slot] = value;
+        insertIntoTable(key, slot);
+
+        // New entries always start at frequency 1, which is the lowest possible bucket
+        int bucket = firstBucket;
+        if (bucket == NIL || bucketFreq[bucket] != 1) {
+            bucket = newBucketAfter(NIL, 1);
+        }
+        linkEntry(bucket, slot);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Move a slot from its bucket to the bucket with frequency + 1
+    private void updateFrequency(int slot) {
+        int bucket = entryBucket[slot];
+        int nextFreq = bucketFreq[bucket] + 1;
+        int next = bucketNext[bucket];
+
+        if (next == NIL || bucketFreq[next] != nextFreq) {
+            next = newBucketAfter(bucket, nextFreq);
+        }
+        unlinkEntry(slot);
+        linkEntry(next, slot);
+    }
+
+    // Evict the least recently used entry of the lowest frequency bucket, returns its slot
+    private int evict() {
+        int slot = bucketTail[firstBucket];
+        unlinkEntry(slot);
+        removeFromTable(keys[slot]);
+        return slot;
+    }
+
+    // ---- frequency lists ----
+
+    private void linkEntry(int bucket, int slot) {
+        int head = bucketHead[bucket];
+        entryBucket[slot] = bucket;
+        entryPrev[slot] = NIL;
+        entryNext[slot] = head;
+        if (head != NIL) {
+            entryPrev[head] = slot;
+        } else {
+            bucketTail[bucket] = slot;
+        }
+        bucketHead[bucket] = slot;
+    }
+
+    private void unlinkEntry(int slot) {
+        int bucket = entryBucket[slot];
+        int prev = entryPrev[slot];
+        int next = entryNext[slot];
+        if (prev != NIL) {
+            entryNext[prev] = next;
+        } else {
+            bucketHead[bucket] = next;
+        }
+        if (next != NIL) {
+            entryPrev[next] = prev;
+        } else {
+            bucketTail[bucket] = prev;
+        }
+
+        // Recycle the bucket as soon as it runs empty
+        if (bucketHead[bucket] == NIL) {
+            releaseBucket(bucket);
+        }
+    }
+
+    // Take a bucket from the free stack and splice it into the chain after `prev` (NIL = front)
+    private int newBucketAfter(int prev, int freq) {
+        int bucket = freeBucket;
+        freeBucket = bucketNext[bucket];
+
+        int next = (prev == NIL) ? firstBucket : bucketNext[prev];
+        bucketFreq[bucket] = freq;
+        bucketHead[bucket] = NIL;
+        bucketTail[bucket] = NIL;
+        bucketPrev[bucket] = prev;
+        bucketNext[bucket] = next;
+        if (prev == NIL) {
+            firstBucket = bucket;
+        } else {
+            bucketNext[prev] = bucket;
+        }
+        if (next != NIL) {
+            bucketPrev[next] = bucket;
+        }
+        return bucket;
+    }
+
+    private void releaseBucket(int bucket) {
+        int prev = bucketPrev[bucket];
+        int next = bucketNext[bucket];
+        if (prev == NIL) {
+            firstBucket = next;
+        } else {
+            bucketNext[prev] = next;
+        }
+        if (next != NIL) {
+            bucketPrev[next] = prev;
+        }
+        bucketNext[bucket] = freeBucket;
+        freeBucket = bucket;
+    }
+
+    // ---- open-addressing table ----
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int findSlot(int key) {
+        for (int i = hash(key) & tableMask; ; i = (i + 1) & tableMask) {
+            int slot = table[i];
+            if (slot == EMPTY) {
+                return NIL;
+            }
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void insertIntoTable(int key, int slot) {
+        int i = hash(key) & tableMask;
+        while (table[i] != EMPTY) {
+            i = (i + 1) & tableMask;
+        }
+        table[i] = slot;
+    }
+
+    // Linear-probing delete: shift later cells of the cluster back so no tombstones are needed
+    private void removeFromTable(int key) {
+        int i = hash(key) & tableMask;
+        while (keys[table[i]] != key) {
+            i = (i + 1) & tableMask;
+        }
+
+        int hole = i;
+        for (int j = (hole + 1) & tableMask; table[j] != EMPTY; j = (j + 1) & tableMask) {
+            int home = hash(keys[table[j]]) & tableMask;
+            // Move j into the hole unless its home lies cyclically in (hole, j]
+            boolean homeBetween = (hole <= j) ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!homeBetween) {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = EMPTY;
+    }
+}
+
+public class IntLFUDemo {
+    public static void main(String[] args) {
+        IntLFUCache cache = new IntLFUCache(3);
+
+        // Put some values in the cache
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+
+        // Get some values
+        System.out.println(cache.get(1));  // Returns 1
+
+        // Add another value (this will evict the least frequently used)
+        cache.put(4, 4);
+
+        // Get values again
+        System.out.println(cache.get(2));  // Returns -1 (evicted)
+        System.out.println(cache.get(3));  // Returns 3
+        System.out.println(cache.get(4));  // Returns 4
+    }
+}
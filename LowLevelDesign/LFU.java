@@ -1,12 +1,26 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
 class Node {
     int key;
     int value;
-    int frequency;
+    FrequencyBucket bucket;  // bucket holding this node, its frequency is the node's frequency
+    Node prev;
+    Node next;
 
     public Node(int key, int value) {
         this.key = key;
         this.value = value;
-        this.frequency = 1;  // default frequency is 1
     }
 }
 
@@ -45,92 +59,624 @@ class DoublyLinkedList {
         removeNode(tailNode);
         return tailNode;
     }
+
+    public boolean isEmpty() {
+        return head.next == tail;
+    }
+}
+
+
+// All nodes with the same frequency, linked to the buckets with the next lower
+// and next higher frequency so promotion is a pointer move instead of a map lookup
+class FrequencyBucket extends DoublyLinkedList {
+    int frequency;
+    FrequencyBucket prev;
+    FrequencyBucket next;
+}
+
+
+// Count-min sketch of approximate access frequencies for every key seen, used as a
+// TinyLFU admission filter. Counters are 4 bits, sixteen packed into each long, and
+// all of them are halved once sampleSize increments have been recorded so old
+// popularity fades instead of saturating the counters.
+class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    public FrequencySketch(int maximumSize) {
+        int maximum = Math.max(1, maximumSize);
+        int length = Integer.highestOneBit(maximum - 1) << 1;
+        this.table = new long[Math.max(1, length)];
+        this.tableMask = table.length - 1;
+        this.sampleSize = 10 * maximum;
+    }
+
+    // Estimated number of times the key was seen (0 - 15)
+    public int frequency(int key) {
+        int hash = spread(key);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    // Record one more occurrence of the key, ageing the sketch when the sample is full
+    public void increment(int key) {
+        int hash = spread(key);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    // Increment the j-th 4 bit counter of table[i] unless it is already saturated
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    // Halve every counter, correcting size for the odd counters that lost their low bit
+    private void reset() {
+        int oddCounters = 0;
+        for (int i = 0; i < table.length; i++) {
+            oddCounters += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (oddCounters >>> 2)) >>> 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
+
+
+// Opt-in hit/miss/eviction counters and get/put latency histograms. Everything is a
+// LongAdder, so one instance can be shared by many caches (e.g. all segments of a
+// ConcurrentLFUCache) without the counters becoming a point of contention.
+class LFUCacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LatencyHistogram getLatency = new LatencyHistogram();
+    private final LatencyHistogram putLatency = new LatencyHistogram();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordGet(long nanos) {
+        getLatency.record(nanos);
+    }
+
+    void recordPut(long nanos) {
+        putLatency.record(nanos);
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long hitCount = hitCount();
+        long requests = hitCount + missCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public LatencyHistogram getLatency() {
+        return getLatency;
+    }
+
+    public LatencyHistogram putLatency() {
+        return putLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d hitRate=%.3f evictions=%d get[%s] put[%s]",
+                hitCount(), missCount(), hitRate(), evictionCount(), getLatency, putLatency);
+    }
+
+    // Latencies bucketed by power of two nanoseconds: bucket i counts values in
+    // [2^(i-1), 2^i), so percentiles are reported as that bucket's upper bound
+    static class LatencyHistogram {
+        private final LongAdder[] buckets = new LongAdder[65];
+        private final LongAdder totalNanos = new LongAdder();
+
+        LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[64 - Long.numberOfLeadingZeros(Math.max(0, nanos))].increment();
+            totalNanos.add(nanos);
+        }
+
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        public double meanNanos() {
+            long count = count();
+            return count == 0 ? 0 : (double) totalNanos.sum() / count;
+        }
+
+        // Upper bound in nanoseconds below which the given fraction (0 - 1) of samples fall
+        public long percentileNanos(double fraction) {
+            long[] counts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return i == 0 ? 0 : (i == 64 ? Long.MAX_VALUE : 1L << i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.0fns p50<%dns p99<%dns p999<%dns", count(), meanNanos(),
+                    percentileNanos(0.5), percentileNanos(0.99), percentileNanos(0.999));
+        }
+    }
 }
 
 
 class LFUCache {
     private final int capacity;
     private int size;
-    private int minFreq;
-    
-    // Store key -> Node (with key, value, frequency)
+
+    // Store key -> Node (with key, value, bucket)
     private Map<Integer, Node> cache;
 
-    // Store frequency -> DoublyLinkedList (which holds all the nodes with that frequency)
-    private Map<Integer, DoublyLinkedList> freqMap;
+    // Circular chain of frequency buckets in increasing frequency order.
+    // The sentinel has frequency 0, so buckets.next is always the minFreq bucket.
+    private final FrequencyBucket buckets;
+
+    // Emptied buckets kept for reuse, linked through their next pointer
+    private FrequencyBucket freeBuckets;
+
+    // TinyLFU admission filter, null when every new key is admitted
+    private final FrequencySketch sketch;
+
+    // Frequency ageing: every agingPeriod operations all frequencies are halved, so keys
+    // that were hot in the past stop pinning the cache. The halving walks the bucket
+    // chain a couple of buckets per operation, never all at once.
+    private static final int AGING_STEPS_PER_OPERATION = 2;
+    private final int agingPeriod;
+    private int operationsSinceAging;
+    private int pendingAgingPasses;
+    private FrequencyBucket agingCursor;  // next bucket to halve, null when no pass is running
+
+    // Statistics, null until recordStats is called so the default path pays nothing
+    private LFUCacheStats stats;
 
     public LFUCache(int capacity) {
+        this(capacity, false);
+    }
+
+    // With admissionFilter set, a new key only replaces the eviction victim when the
+    // sketch estimates it to be more popular, so one-hit scans can't flush hot keys
+    public LFUCache(int capacity, boolean admissionFilter) {
+        this(capacity, admissionFilter, 0);
+    }
+
+    // agingPeriod is the number of get/put calls between halvings, 0 disables ageing
+    public LFUCache(int capacity, boolean admissionFilter, int agingPeriod) {
+        if (agingPeriod < 0) {
+            throw new IllegalArgumentException("agingPeriod must be >= 0");
+        }
+        this.agingPeriod = agingPeriod;
         this.capacity = capacity;
         this.size = 0;
-        this.minFreq = 0;
         cache = new HashMap<>();
-        freqMap = new HashMap<>();
+        buckets = new FrequencyBucket();
+        buckets.next = buckets;
+        buckets.prev = buckets;
+        sketch = admissionFilter ? new FrequencySketch(capacity) : null;
+    }
+
+    // Start collecting statistics into a new LFUCacheStats
+    public LFUCacheStats recordStats() {
+        return recordStats(new LFUCacheStats());
+    }
+
+    // Start collecting statistics into the given, possibly shared, LFUCacheStats
+    public LFUCacheStats recordStats(LFUCacheStats stats) {
+        this.stats = stats;
+        return stats;
+    }
+
+    // Snapshot of how many keys sit at each frequency, lowest frequency first
+    public Map<Integer, Integer> frequencyDistribution() {
+        Map<Integer, Integer> distribution = new TreeMap<>();
+        for (FrequencyBucket bucket = buckets.next; bucket != buckets; bucket = bucket.next) {
+            int count = 0;
+            for (Node node = bucket.head.next; node != bucket.tail; node = node.next) {
+                count++;
+            }
+            distribution.put(bucket.frequency, count);
+        }
+        return distribution;
     }
 
     // Get the value from cache and update its frequency
     public int get(int key) {
-        if (!cache.containsKey(key)) {
-            return -1;
+        if (stats == null) {
+            return getValue(key);
         }
+        long start = System.nanoTime();
+        int value = getValue(key);
+        stats.recordGet(System.nanoTime() - start);
+        return value;
+    }
+
+    // Put a new key-value pair or update existing key
+    public void put(int key, int value) {
+        put(key, value, true);
+    }
 
-        // Get the node
+    // Put a value loaded after get(key) missed. That get already counted the request in
+    // the admission sketch, so unlike put() this doesn't count it a second time.
+    public void putAfterMiss(int key, int value) {
+        put(key, value, false);
+    }
+
+    private void put(int key, int value, boolean countAccess) {
+        if (stats == null) {
+            putValue(key, value, countAccess);
+            return;
+        }
+        long start = System.nanoTime();
+        putValue(key, value, countAccess);
+        stats.recordPut(System.nanoTime() - start);
+    }
+
+    private int getValue(int key) {
+        age();
+        if (sketch != null) {
+            sketch.increment(key);  // misses count too, that's how a new key earns admission
+        }
         Node node = cache.get(key);
+        if (node == null) {
+            if (stats != null) {
+                stats.recordMiss();
+            }
+            return -1;
+        }
+        if (stats != null) {
+            stats.recordHit();
+        }
         updateFrequency(node);
         return node.value;
     }
 
-    // Put a new key-value pair or update existing key
-    public void put(int key, int value) {
+    private void putValue(int key, int value, boolean countAccess) {
         if (capacity == 0) {
             return;  // If capacity is 0, no items can be added
         }
+        age();
+        if (sketch != null && countAccess) {
+            sketch.increment(key);
+        }
 
         // If the key exists, update its value and frequency
-        if (cache.containsKey(key)) {
-            Node node = cache.get(key);
+        Node node = cache.get(key);
+        if (node != null) {
             node.value = value;
             updateFrequency(node);
         } else {
             // If capacity is reached, evict the least frequent item
             if (size == capacity) {
+                if (!admit(key)) {
+                    return;  // Candidate is less popular than the victim, keep the victim
+                }
                 evict();
             }
 
-            // Create a new node and add it to the cache and frequency map
+            // Create a new node and add it to the frequency 1 bucket at the front of the chain
             Node newNode = new Node(key, value);
             cache.put(key, newNode);
-            freqMap.computeIfAbsent(1, k -> new DoublyLinkedList()).addNode(newNode);
-            minFreq = 1;
+            FrequencyBucket first = buckets.next;
+            if (first.frequency != 1) {
+                first = newBucketAfter(buckets, 1);
+            }
+            first.addNode(newNode);
+            newNode.bucket = first;
             size++;
         }
     }
 
-    // Update the frequency of a node
-    private void updateFrequency(Node node) {
-        int freq = node.frequency;
-        freqMap.get(freq).removeNode(node);
-        
-        // If no nodes left with that frequency, we may need to increase minFreq
-        if (freqMap.get(freq).head.next == freqMap.get(freq).tail) {
-            if (freq == minFreq) {
-                minFreq++;
+    // Snapshot layout: magic, version, entry count, bucket count, then per bucket from the lowest
+    // frequency up: frequency, node count and the (key, value) pairs from least to most
+    // recently used. That is exactly eviction order, which restore relies on.
+    private static final int SNAPSHOT_MAGIC = 0x4C465553;  // "LFUS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
+
+    // Write keys, values and frequencies to a binary snapshot file. The file is written
+    // next to the target and moved into place, so a crash never leaves a torn snapshot.
+    public void saveSnapshot(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+
+            int bucketCount = 0;
+            for (FrequencyBucket bucket = buckets.next; bucket != buckets; bucket = bucket.next) {
+                bucketCount++;
+            }
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(size).putInt(bucketCount);
+
+            for (FrequencyBucket bucket = buckets.next; bucket != buckets; bucket = bucket.next) {
+                int count = 0;
+                for (Node node = bucket.tail.prev; node != bucket.head; node = node.prev) {
+                    count++;
+                }
+                ensureWritable(channel, buffer, 8);
+                buffer.putInt(bucket.frequency).putInt(count);
+
+                for (Node node = bucket.tail.prev; node != bucket.head; node = node.prev) {
+                    ensureWritable(channel, buffer, 8);
+                    buffer.putInt(node.key).putInt(node.value);
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Replace the cache contents with a snapshot written by saveSnapshot. Frequencies and
+    // the recency order inside every bucket are restored as they were. If the snapshot
+    // holds more keys than this cache's capacity, the ones that would be evicted first
+    // are skipped.
+    public void loadSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+            buffer.flip();
+
+            ensureReadable(channel, buffer, 16);
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an LFUCache snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported LFUCache snapshot version " + version);
+            }
+            int total = buffer.getInt();
+            int bucketCount = buffer.getInt();
+            int toSkip = Math.max(0, total - capacity);
+
+            clear(Math.min(total, capacity));
+            for (int b = 0; b < bucketCount; b++) {
+                ensureReadable(channel, buffer, 8);
+                int frequency = buffer.getInt();
+                int count = buffer.getInt();
+
+                FrequencyBucket bucket = null;
+                for (int i = 0; i < count; i++) {
+                    ensureReadable(channel, buffer, 8);
+                    int key = buffer.getInt();
+                    int value = buffer.getInt();
+                    if (toSkip > 0) {
+                        toSkip--;
+                        continue;
+                    }
+                    if (bucket == null) {
+                        bucket = newBucketAfter(buckets.prev, frequency);  // Append, buckets come in order
+                    }
+                    Node node = new Node(key, value);
+                    bucket.addNode(node);  // Least recently used first, so the last one ends up at the front
+                    node.bucket = bucket;
+                    cache.put(key, node);
+                    size++;
+                }
             }
-            freqMap.remove(freq);
         }
+    }
 
-        node.frequency++;
-        freqMap.computeIfAbsent(node.frequency, k -> new DoublyLinkedList()).addNode(node);
+    // Drop every entry, sizing the map for the entries about to be restored
+    private void clear(int expectedSize) {
+        cache = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+        buckets.next = buckets;  // Old buckets still hold nodes, so let them go instead of recycling
+        buckets.prev = buckets;
+        size = 0;
+        agingCursor = null;
+        pendingAgingPasses = 0;
+        operationsSinceAging = 0;
+    }
+
+    private static void ensureWritable(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static void ensureReadable(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Truncated LFUCache snapshot");
+            }
+        }
+        buffer.flip();
+    }
+
+    // Update the frequency of a node by moving it to the neighbouring bucket
+    private void updateFrequency(Node node) {
+        FrequencyBucket bucket = node.bucket;
+        FrequencyBucket next = bucket.next;
+        if (next.frequency != bucket.frequency + 1) {
+            next = newBucketAfter(bucket, bucket.frequency + 1);
+        }
+
+        bucket.removeNode(node);
+        next.addNode(node);
+        node.bucket = next;
+
+        // If no nodes left with that frequency, drop the bucket from the chain
+        if (bucket.isEmpty()) {
+            releaseBucket(bucket);
+        }
+    }
+
+    // Admission filter: let the candidate in only if it has been seen more often than
+    // the node evict() would remove
+    private boolean admit(int candidateKey) {
+        if (sketch == null) {
+            return true;
+        }
+        Node victim = buckets.next.tail.prev;
+        return sketch.frequency(candidateKey) > sketch.frequency(victim.key);
     }
 
     // Evict the least frequent used node (the node with the lowest frequency)
     private void evict() {
-        DoublyLinkedList list = freqMap.get(minFreq);
-        if (list == null) {
+        FrequencyBucket minBucket = buckets.next;
+        if (minBucket == buckets) {
             return;  // No nodes to evict
         }
-        Node evictedNode = list.removeTail();
+        Node evictedNode = minBucket.removeTail();
         cache.remove(evictedNode.key);
         size--;
+        if (stats != null) {
+            stats.recordEviction();
+        }
+
+        if (minBucket.isEmpty()) {
+            releaseBucket(minBucket);
+        }
+    }
+
+    // Advance the running halving pass by a few buckets, starting a new pass every
+    // agingPeriod operations. A bucket is halved but never dropped to or below the
+    // (already halved) bucket before it, which keeps the chain strictly increasing
+    // without merging buckets, so no node is ever touched by ageing.
+    private void age() {
+        if (agingPeriod == 0) {
+            return;
+        }
+        if (++operationsSinceAging >= agingPeriod) {
+            operationsSinceAging = 0;
+            if (agingCursor == null) {
+                agingCursor = buckets.next;
+            } else {
+                pendingAgingPasses++;  // Previous pass still running, start this one after it
+            }
+        }
+
+        for (int step = 0; step < AGING_STEPS_PER_OPERATION && agingCursor != null; step++) {
+            if (agingCursor == buckets) {
+                // Reached the end of the chain
+                if (pendingAgingPasses > 0) {
+                    pendingAgingPasses--;
+                    agingCursor = buckets.next;
+                } else {
+                    agingCursor = null;
+                }
+                continue;
+            }
+            FrequencyBucket bucket = agingCursor;
+            bucket.frequency = Math.max(bucket.frequency >>> 1, bucket.prev.frequency + 1);
+            agingCursor = bucket.next;
+        }
+    }
+
+    // Splice a bucket with the given frequency into the chain right after prev,
+    // reusing a previously emptied bucket when one is available
+    private FrequencyBucket newBucketAfter(FrequencyBucket prev, int frequency) {
+        FrequencyBucket bucket = freeBuckets;
+        if (bucket != null) {
+            freeBuckets = bucket.next;
+        } else {
+            bucket = new FrequencyBucket();
+        }
+        bucket.frequency = frequency;
+        bucket.prev = prev;
+        bucket.next = prev.next;
+        prev.next.prev = bucket;
+        prev.next = bucket;
+        return bucket;
+    }
+
+    // Unlink an empty bucket from the chain and keep it for reuse
+    private void releaseBucket(FrequencyBucket bucket) {
+        if (bucket == agingCursor) {
+            agingCursor = bucket.next;
+        }
+        bucket.prev.next = bucket.next;
+        bucket.next.prev = bucket.prev;
+        bucket.prev = null;
+        bucket.next = freeBuckets;
+        freeBuckets = bucket;
     }
 }
 
@@ -155,5 +701,48 @@ public class Main {
         System.out.println(cache.get(2));  // Returns -1 (evicted)
         System.out.println(cache.get(3));  // Returns 3
         System.out.println(cache.get(4));  // Returns 4
+
+        // With the admission filter a one-hit scan can't push out the hot keys
+        LFUCache filtered = new LFUCache(100, true);
+        for (int round = 0; round < 4; round++) {
+            for (int key = 0; key < 100; key++) {
+                if (filtered.get(key) == -1) {
+                    filtered.put(key, key);
+                }
+            }
+        }
+        for (int key = 1000; key < 1500; key++) {
+            filtered.put(key, key);  // Scan of keys seen once, rejected by the filter
+        }
+        int hotHits = 0;
+        for (int key = 0; key < 100; key++) {
+            if (filtered.get(key) != -1) {
+                hotHits++;
+            }
+        }
+        System.out.println(hotHits);  // Returns 99, nearly every hot key survived (0 without the filter)
+
+        // Opt-in statistics
+        LFUCache measured = new LFUCache(2);
+        LFUCacheStats stats = measured.recordStats();
+        measured.put(1, 1);
+        measured.put(2, 2);
+        measured.get(1);
+        measured.get(3);
+        measured.put(3, 3);
+        System.out.println(stats.hitCount() + " " + stats.missCount() + " " + stats.evictionCount());  // 1 1 1
+        System.out.println(measured.frequencyDistribution());  // {1=1, 2=1}
+
+        // Warm restart: save before shutdown, load on startup
+        try {
+            Path snapshot = Paths.get("lfu.snapshot");
+            cache.saveSnapshot(snapshot);
+            LFUCache restarted = new LFUCache(3);
+            restarted.loadSnapshot(snapshot);
+            System.out.println(restarted.get(3));  // Returns 3, restored with its frequency
+            Files.delete(snapshot);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 }
@@ -0,0 +1,235 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for LFUCache (LFU.java) and ConcurrentLFUCache (ConcurrentLFU.java).
+ *
+ * Covers get hit, get miss, put with eviction and a mixed Zipfian get/put workload at
+ * several capacities, single-threaded for LFUCache and at 1 - 8 threads for the
+ * segmented cache (LFUBenchmark.Concurrent). Runs with the GC profiler so every
+ * result also reports allocation rate (gc.alloc.rate.norm = bytes per operation).
+ *
+ * Built by the Maven module in benchmarks/, which compiles it together with LFU.java
+ * and ConcurrentLFU.java:
+ *   cd benchmarks && mvn package && java -cp target/benchmarks.jar lfu.LFUBenchmark
+ * Results from a run are kept in benchmarks/RESULTS.md.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(1)
+public class LFUBenchmark {
+    // Power of two number of precomputed keys, big enough that the sequence doesn't
+    // repeat in step with the cache's own ordering
+    static final int KEY_COUNT = 1 << 20;
+    static final int KEY_MASK = KEY_COUNT - 1;
+
+    @Param({"1000", "100000", "1000000"})
+    int capacity;
+
+    LFUCache cache;
+    int[] hitKeys;
+    int[] zipfKeys;
+    int index;
+    int nextFreshKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new LFUCache(capacity);
+        for (int key = 0; key < capacity; key++) {
+            cache.put(key, key);
+        }
+        hitKeys = uniformKeys(capacity, 1);
+        zipfKeys = zipfKeys(4 * capacity, 2);
+        nextFreshKey = capacity;
+    }
+
+    @Benchmark
+    public int getHit() {
+        return cache.get(hitKeys[index++ & KEY_MASK]);
+    }
+
+    @Benchmark
+    public int getMiss() {
+        // Negative keys are never inserted
+        return cache.get(-1 - hitKeys[index++ & KEY_MASK]);
+    }
+
+    @Benchmark
+    public void putEvict() {
+        // Always a new key on a full cache, so every call evicts
+        cache.put(nextFreshKey, nextFreshKey);
+        nextFreshKey++;
+    }
+
+    @Benchmark
+    public void zipfMixed(Blackhole blackhole) {
+        // Read-through pattern: 1 in 8 operations is a write regardless of hit or miss
+        int i = index++;
+        int key = zipfKeys[i & KEY_MASK];
+        if ((i & 7) == 0) {
+            cache.put(key, key);
+        } else if (cache.get(key) == -1) {
+            cache.put(key, key);
+        } else {
+            blackhole.consume(key);
+        }
+    }
+
+    static int[] uniformKeys(int keySpace, long seed) {
+        Random random = new Random(seed);
+        int[] keys = new int[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = random.nextInt(keySpace);
+        }
+        return keys;
+    }
+
+    // Keys drawn from a Zipf(1.0) distribution over [0, keySpace) by inverting its CDF,
+    // shuffled through a multiplicative hash so popular keys aren't all small integers
+    static int[] zipfKeys(int keySpace, long seed) {
+        double[] cdf = new double[keySpace];
+        double sum = 0;
+        for (int rank = 0; rank < keySpace; rank++) {
+            sum += 1.0 / (rank + 1);
+            cdf[rank] = sum;
+        }
+
+        Random random = new Random(seed);
+        int[] keys = new int[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            double u = random.nextDouble() * sum;
+            int low = 0;
+            int high = keySpace - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cdf[mid] < u) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            keys[i] = (int) (((long) low * 0x9E3779B1L) % keySpace);
+        }
+        return keys;
+    }
+
+    /**
+     * Same workloads against ConcurrentLFUCache, with one cache shared by all benchmark
+     * threads. The thread count comes from the runner.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(2)
+    public static class Concurrent {
+        @Param({"1000", "100000", "1000000"})
+        int capacity;
+
+        ConcurrentLFUCache cache;
+        int[] hitKeys;
+        int[] zipfKeys;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            cache = new ConcurrentLFUCache(capacity);
+            for (int key = 0; key < capacity; key++) {
+                cache.put(key, key);
+            }
+            hitKeys = uniformKeys(capacity, 1);
+            zipfKeys = zipfKeys(4 * capacity, 2);
+        }
+
+        // Each thread walks the shared key arrays from its own offset, and inserts fresh
+        // keys from its own slice of the negative ints, 2^27 keys wide for up to 16 threads
+        @State(Scope.Thread)
+        public static class Cursor {
+            static final int FRESH_KEY_RANGE = 1 << 27;
+            static final AtomicInteger THREADS = new AtomicInteger();
+
+            int index;
+            int nextFreshKey;
+
+            @Setup(Level.Trial)
+            public void setUp() {
+                int thread = THREADS.getAndIncrement() & 15;
+                index = thread * 7919;
+                nextFreshKey = Integer.MIN_VALUE + thread * FRESH_KEY_RANGE;
+            }
+        }
+
+        @Benchmark
+        public int getHit(Cursor cursor) {
+            return cache.get(hitKeys[cursor.index++ & KEY_MASK]);
+        }
+
+        @Benchmark
+        public int getMiss(Cursor cursor) {
+            return cache.get(-1 - hitKeys[cursor.index++ & KEY_MASK]);
+        }
+
+        @Benchmark
+        public void putEvict(Cursor cursor) {
+            cache.put(cursor.nextFreshKey, cursor.nextFreshKey);
+            cursor.nextFreshKey++;
+        }
+
+        @Benchmark
+        public void zipfMixed(Cursor cursor, Blackhole blackhole) {
+            int i = cursor.index++;
+            int key = zipfKeys[i & KEY_MASK];
+            if ((i & 7) == 0) {
+                cache.put(key, key);
+            } else if (cache.get(key) == -1) {
+                cache.put(key, key);
+            } else {
+                blackhole.consume(key);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        // Single-threaded LFUCache baseline
+        Options single = new OptionsBuilder()
+                .include("LFUBenchmark\\.[a-zA-Z]+$")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(single).run();
+
+        // Segmented cache at increasing thread counts
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            Options concurrent = new OptionsBuilder()
+                    .include("LFUBenchmark\\.Concurrent\\.")
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(concurrent).run();
+        }
+    }
+}
@@ -0,0 +1,762 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Generic read-through LFU cache.
+ *
+ * get(key) returns the cached value or loads it through the loader and caches it, so
+ * callers no longer write "miss -> load -> put" themselves. Loads are single-flight:
+ * when several threads miss on the same key at once, one of them runs the loader and
+ * the rest wait for that same result. getAll batches all of its misses into one call
+ * to the bulk loader.
+ *
+ * Capacity is either a number of entries or, with a Weigher, a total weight such as
+ * bytes. In weight mode evict() keeps removing the least frequent entries until the
+ * total weight fits, and the budget can be changed at runtime with setMaximumWeight.
+ *
+ * Entries can expire after a time-to-live since they were written and/or a time-to-idle
+ * since they were last read. Expired entries are dropped lazily when accessed, and put
+ * advances a hierarchical timer wheel that reclaims the ones nobody touches anymore,
+ * so there is no sweeper thread and no full scan of the cache.
+ *
+ * The LFU structure is the same bucket chain as LFUCache, guarded by one lock that is
+ * never held while a loader runs.
+ */
+class LoadingLFUCache<K, V> {
+    private static final long NEVER = Long.MAX_VALUE;  // deadline of an entry that doesn't expire
+
+    // Timer wheel layout: buckets per level, the span of one bucket and its bit shift
+    private static final int[] TIMER_BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] TIMER_SPANS = {1L << 30, 1L << 36, 1L << 42, 1L << 46, 1L << 48, 1L << 48};
+    private static final int[] TIMER_SHIFT = {30, 36, 42, 46, 48};
+
+    private final Function<? super K, ? extends V> loader;
+    private final Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> bulkLoader;
+
+    // Without a weigher every entry weighs 1, so the maximum is an entry count
+    private final Weigher<? super K, ? super V> weigher;
+    private long maximumWeight;
+    private long totalWeight;
+
+    // Expiry settings in nanoseconds, 0 when disabled
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final LongSupplier ticker;
+    private final TimerWheel timerWheel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, Entry<K, V>> cache = new HashMap<>();
+
+    private final Bucket<K, V> buckets;   // sentinel of the bucket chain, buckets.next is minFreq
+    private Bucket<K, V> freeBuckets;
+
+    // Loads currently running, keyed by the key being loaded
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public LoadingLFUCache(int capacity, Function<? super K, ? extends V> loader) {
+        this(new Builder<K, V>(loader).maximumSize(capacity));
+    }
+
+    // bulkLoader receives every missing key of a getAll call at once. Keys it leaves out
+    // of the result are treated as absent. Without one, getAll calls loader per key.
+    public LoadingLFUCache(int capacity, Function<? super K, ? extends V> loader,
+                           Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> bulkLoader) {
+        this(new Builder<K, V>(loader).maximumSize(capacity).bulkLoader(bulkLoader));
+    }
+
+    private LoadingLFUCache(Builder<K, V> builder) {
+        this.loader = builder.loader;
+        this.bulkLoader = builder.bulkLoader;
+        this.weigher = builder.weigher;
+        this.maximumWeight = builder.maximumWeight;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.ticker = builder.ticker;
+        this.timerWheel = new TimerWheel(ticker.getAsLong());
+        this.buckets = new Bucket<>();
+        buckets.next = buckets;
+        buckets.prev = buckets;
+    }
+
+    // Cached value for the key, or null without loading it
+    public V getIfPresent(K key) {
+        Objects.requireNonNull(key, "key");
+        lock.lock();
+        try {
+            Entry<K, V> entry = cache.get(key);
+            if (entry == null || !refreshOnAccess(entry)) {
+                return null;
+            }
+            updateFrequency(entry);
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Cached value for the key, loading it on a miss. Returns null if the loader does.
+    public V get(K key) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, load);
+        if (running != null) {
+            return await(running);  // Someone else is already loading this key
+        }
+
+        try {
+            // A load may have finished between our miss and registering, don't repeat it
+            value = getIfPresent(key);
+            if (value == null) {
+                value = loader.apply(key);
+                if (value != null) {
+                    put(key, value);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    // Values for all keys, loading every miss with a single bulk load. Keys without a
+    // value are left out of the result.
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> result = new LinkedHashMap<>();
+        Set<K> misses = new LinkedHashSet<>();
+
+        lock.lock();
+        try {
+            for (K key : keys) {
+                Objects.requireNonNull(key, "key");
+                Entry<K, V> entry = cache.get(key);
+                if (entry != null && refreshOnAccess(entry)) {
+                    updateFrequency(entry);
+                    result.put(key, entry.value);
+                } else {
+                    misses.add(key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        // Claim the misses nobody else is loading, wait for the rest
+        Map<K, CompletableFuture<V>> owned = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> waiting = new LinkedHashMap<>();
+        for (K key : misses) {
+            CompletableFuture<V> load = new CompletableFuture<>();
+            CompletableFuture<V> running = inFlight.putIfAbsent(key, load);
+            if (running == null) {
+                owned.put(key, load);
+            } else {
+                waiting.put(key, running);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            try {
+                Map<K, V> loaded = loadAll(owned.keySet());
+                for (Map.Entry<K, CompletableFuture<V>> load : owned.entrySet()) {
+                    V value = loaded.get(load.getKey());
+                    if (value != null) {
+                        put(load.getKey(), value);
+                    }
+                    load.getValue().complete(value);
+                }
+            } catch (RuntimeException | Error e) {
+                for (CompletableFuture<V> load : owned.values()) {
+                    load.completeExceptionally(e);
+                }
+                throw e;
+            } finally {
+                for (Map.Entry<K, CompletableFuture<V>> load : owned.entrySet()) {
+                    inFlight.remove(load.getKey(), load.getValue());
+                }
+            }
+        }
+
+        // Merge in key order so the result iterates like the requested keys
+        for (K key : misses) {
+            CompletableFuture<V> load = owned.containsKey(key) ? owned.get(key) : waiting.get(key);
+            V value = await(load);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    // Put a new key-value pair or update existing key
+    public void put(K key, V value) {
+        put(key, value, expireAfterWriteNanos);
+    }
+
+    // Put with a time-to-live for this entry only, overriding the cache-wide one
+    public void put(K key, V value, long timeToLive, TimeUnit unit) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("timeToLive must be > 0");
+        }
+        put(key, value, unit.toNanos(timeToLive));
+    }
+
+    private void put(K key, V value, long timeToLiveNanos) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int weight = weigh(key, value);
+
+        lock.lock();
+        try {
+            // Only read the clock when something can expire
+            boolean expiring = timeToLiveNanos > 0 || expireAfterAccessNanos > 0 || timerWheel.size > 0;
+            long now = expiring ? ticker.getAsLong() : 0;
+            if (timerWheel.size > 0) {
+                timerWheel.advance(now);  // Reclaim whatever expired since the last put
+            }
+
+            Entry<K, V> entry = cache.get(key);
+            if (entry != null) {
+                if (weight > maximumWeight) {
+                    removeEntry(entry);  // The new value can never fit, drop the stale one too
+                    return;
+                }
+                entry.value = value;
+                totalWeight += weight - entry.weight;
+                entry.weight = weight;
+                setExpiry(entry, timeToLiveNanos, now);
+                updateFrequency(entry);
+                evictUntilFits(0);
+                return;
+            }
+            if (weight > maximumWeight) {
+                return;  // Larger than the whole budget, caching it would just flush the cache
+            }
+            evictUntilFits(weight);
+
+            entry = new Entry<>(key, value);
+            entry.weight = weight;
+            cache.put(key, entry);
+            totalWeight += weight;
+            Bucket<K, V> first = buckets.next;
+            if (first.frequency != 1) {
+                first = newBucketAfter(buckets, 1);
+            }
+            first.addFirst(entry);
+            setExpiry(entry, timeToLiveNanos, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Change the budget at runtime, evicting least frequent entries if it shrank
+    public void setMaximumWeight(long maximumWeight) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("maximumWeight must be >= 0");
+        }
+        lock.lock();
+        try {
+            this.maximumWeight = maximumWeight;
+            evictUntilFits(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Total weight of the cached entries, the entry count when there is no weigher
+    public long weightedSize() {
+        lock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int weigh(K key, V value) {
+        if (weigher == null) {
+            return 1;
+        }
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("weigher returned a negative weight for " + key);
+        }
+        return weight;
+    }
+
+    private Map<K, V> loadAll(Set<K> keys) {
+        Map<K, V> loaded = new HashMap<>();
+        if (bulkLoader != null) {
+            Map<? extends K, ? extends V> values = bulkLoader.apply(keys);
+            if (values != null) {
+                loaded.putAll(values);
+            }
+        } else {
+            for (K key : keys) {
+                loaded.put(key, loader.apply(key));
+            }
+        }
+        return loaded;
+    }
+
+    // Wait for another thread's load, rethrowing its failure as-is
+    private static <V> V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    // ---- expiry, caller holds the lock ----
+
+    // Start the entry's time-to-live and time-to-idle from now
+    private void setExpiry(Entry<K, V> entry, long timeToLiveNanos, long now) {
+        entry.writeDeadline = (timeToLiveNanos > 0) ? now + timeToLiveNanos : NEVER;
+        entry.accessDeadline = (expireAfterAccessNanos > 0) ? now + expireAfterAccessNanos : NEVER;
+        reschedule(entry);
+    }
+
+    // Drop the entry if it has expired, otherwise restart its time-to-idle.
+    // Returns false when the entry was expired and removed.
+    private boolean refreshOnAccess(Entry<K, V> entry) {
+        if (entry.deadline == NEVER && expireAfterAccessNanos == 0) {
+            return true;
+        }
+        long now = ticker.getAsLong();
+        if (entry.deadline != NEVER && entry.deadline - now <= 0) {
+            removeEntry(entry);
+            return false;
+        }
+        if (expireAfterAccessNanos > 0) {
+            entry.accessDeadline = now + expireAfterAccessNanos;
+            reschedule(entry);
+        }
+        return true;
+    }
+
+    private void reschedule(Entry<K, V> entry) {
+        timerWheel.deschedule(entry);
+        if (entry.writeDeadline == NEVER) {
+            entry.deadline = entry.accessDeadline;
+        } else if (entry.accessDeadline == NEVER) {
+            entry.deadline = entry.writeDeadline;
+        } else {
+            entry.deadline = (entry.writeDeadline - entry.accessDeadline < 0) ? entry.writeDeadline : entry.accessDeadline;
+        }
+        if (entry.deadline != NEVER) {
+            timerWheel.schedule(entry);
+        }
+    }
+
+    // Hierarchical timer wheel of entries that have a deadline. Level 0 buckets span
+    // ~1s each (64 of them), the coarser levels cover ~1m, ~1h and ~1d buckets, and
+    // the last bucket holds everything further out. When a coarse bucket comes due its
+    // entries cascade into finer levels, so an entry moves at most once per level and
+    // expiry costs amortized O(1) per operation.
+    //
+    // Times are kept relative to the ticker value at construction so they stay positive
+    // and the bit shifts work even when System.nanoTime starts out negative.
+    private final class TimerWheel {
+        final Entry<K, V>[][] wheel;
+        final long origin;
+        long nanos;  // time of the last advance, relative to origin
+        int size;
+
+        @SuppressWarnings("unchecked")
+        TimerWheel(long origin) {
+            this.origin = origin;
+            wheel = (Entry<K, V>[][]) new Entry<?, ?>[TIMER_BUCKETS.length][];
+            for (int level = 0; level < wheel.length; level++) {
+                wheel[level] = (Entry<K, V>[]) new Entry<?, ?>[TIMER_BUCKETS[level]];
+                for (int i = 0; i < wheel[level].length; i++) {
+                    Entry<K, V> sentinel = new Entry<>(null, null);
+                    sentinel.timerPrev = sentinel;
+                    sentinel.timerNext = sentinel;
+                    wheel[level][i] = sentinel;
+                }
+            }
+        }
+
+        void schedule(Entry<K, V> entry) {
+            Entry<K, V> sentinel = findBucket(entry.deadline);
+            entry.timerNext = sentinel;
+            entry.timerPrev = sentinel.timerPrev;
+            sentinel.timerPrev.timerNext = entry;
+            sentinel.timerPrev = entry;
+            size++;
+        }
+
+        void deschedule(Entry<K, V> entry) {
+            if (entry.timerNext == null) {
+                return;  // Not in the wheel
+            }
+            entry.timerPrev.timerNext = entry.timerNext;
+            entry.timerNext.timerPrev = entry.timerPrev;
+            entry.timerPrev = null;
+            entry.timerNext = null;
+            size--;
+        }
+
+        // Expire or cascade every bucket whose time span has passed since the last advance
+        void advance(long tickerNanos) {
+            long previousNanos = nanos;
+            long currentNanos = tickerNanos - origin;
+            nanos = currentNanos;
+            for (int level = 0; level < TIMER_SHIFT.length; level++) {
+                long previousTicks = previousNanos >>> TIMER_SHIFT[level];
+                long currentTicks = currentNanos >>> TIMER_SHIFT[level];
+                long delta = currentTicks - previousTicks;
+                if (delta <= 0) {
+                    break;  // Coarser levels can't have moved either
+                }
+                expire(level, previousTicks, delta);
+            }
+        }
+
+        private void expire(int level, long previousTicks, long delta) {
+            Entry<K, V>[] timerWheel = wheel[level];
+            int mask = timerWheel.length - 1;
+            int steps = (int) Math.min(1 + delta, timerWheel.length);
+            int start = (int) (previousTicks & mask);
+            for (int i = start; i < start + steps; i++) {
+                // Detach the whole bucket first, entries that aren't due yet get rescheduled
+                Entry<K, V> sentinel = timerWheel[i & mask];
+                Entry<K, V> entry = sentinel.timerNext;
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+
+                while (entry != sentinel) {
+                    Entry<K, V> next = entry.timerNext;
+                    entry.timerPrev = null;
+                    entry.timerNext = null;
+                    size--;
+                    if (entry.deadline - origin - nanos <= 0) {
+                        removeEntry(entry);
+                    } else {
+                        schedule(entry);
+                    }
+                    entry = next;
+                }
+            }
+        }
+
+        private Entry<K, V> findBucket(long deadline) {
+            // Anything already due goes into the current level 0 bucket, handled on the next tick
+            long duration = Math.max(0, deadline - origin - nanos);
+            int last = wheel.length - 1;
+            for (int level = 0; level < last; level++) {
+                if (duration < TIMER_SPANS[level + 1]) {
+                    long ticks = (nanos + duration) >>> TIMER_SHIFT[level];
+                    return wheel[level][(int) (ticks & (wheel[level].length - 1))];
+                }
+            }
+            return wheel[last][0];
+        }
+    }
+
+    // ---- LFU bucket chain, caller holds the lock ----
+
+    private void updateFrequency(Entry<K, V> entry) {
+        Bucket<K, V> bucket = entry.bucket;
+        Bucket<K, V> next = bucket.next;
+        if (next.frequency != bucket.frequency + 1) {
+            next = newBucketAfter(bucket, bucket.frequency + 1);
+        }
+        bucket.remove(entry);
+        next.addFirst(entry);
+        if (bucket.isEmpty()) {
+            releaseBucket(bucket);
+        }
+    }
+
+    // Evict least frequent entries until `incoming` more weight fits in the budget
+    private void evictUntilFits(long incoming) {
+        while (totalWeight + incoming > maximumWeight && buckets.next != buckets) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        Bucket<K, V> minBucket = buckets.next;
+        if (minBucket == buckets) {
+            return;  // No entries to evict
+        }
+        removeEntry(minBucket.tail.prev);
+    }
+
+    private void removeEntry(Entry<K, V> entry) {
+        timerWheel.deschedule(entry);
+        Bucket<K, V> bucket = entry.bucket;
+        bucket.remove(entry);
+        cache.remove(entry.key);
+        totalWeight -= entry.weight;
+        if (bucket.isEmpty()) {
+            releaseBucket(bucket);
+        }
+    }
+
+    private Bucket<K, V> newBucketAfter(Bucket<K, V> prev, int frequency) {
+        Bucket<K, V> bucket = freeBuckets;
+        if (bucket != null) {
+            freeBuckets = bucket.next;
+        } else {
+            bucket = new Bucket<>();
+        }
+        bucket.frequency = frequency;
+        bucket.prev = prev;
+        bucket.next = prev.next;
+        prev.next.prev = bucket;
+        prev.next = bucket;
+        return bucket;
+    }
+
+    private void releaseBucket(Bucket<K, V> bucket) {
+        bucket.prev.next = bucket.next;
+        bucket.next.prev = bucket.prev;
+        bucket.prev = null;
+        bucket.next = freeBuckets;
+        freeBuckets = bucket;
+    }
+
+    private static final class Entry<K, V> {
+        final K key;
+        V value;
+        int weight;
+        Bucket<K, V> bucket;
+        Entry<K, V> prev;
+        Entry<K, V> next;
+
+        // Expiry deadlines in ticker nanos, NEVER when not set
+        long writeDeadline = NEVER;
+        long accessDeadline = NEVER;
+        long deadline = NEVER;
+        Entry<K, V> timerPrev;
+        Entry<K, V> timerNext;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // Entries with the same frequency, most recently used first
+    private static final class Bucket<K, V> {
+        int frequency;
+        Bucket<K, V> prev;
+        Bucket<K, V> next;
+        final Entry<K, V> head = new Entry<>(null, null);  // dummy node
+        final Entry<K, V> tail = new Entry<>(null, null);  // dummy node
+
+        Bucket() {
+            head.next = tail;
+            tail.prev = head;
+        }
+
+        void addFirst(Entry<K, V> entry) {
+            entry.bucket = this;
+            entry.prev = head;
+            entry.next = head.next;
+            head.next.prev = entry;
+            head.next = entry;
+        }
+
+        void remove(Entry<K, V> entry) {
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+        }
+
+        boolean isEmpty() {
+            return head.next == tail;
+        }
+    }
+
+    public static class Builder<K, V> {
+        // Required parameters
+        private final Function<? super K, ? extends V> loader;
+
+        // Optional parameters - initialized to default values
+        private Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> bulkLoader;
+        private long maximumWeight = Long.MAX_VALUE;
+        private Weigher<? super K, ? super V> weigher;
+        private long expireAfterWriteNanos;
+        private long expireAfterAccessNanos;
+        private LongSupplier ticker = System::nanoTime;
+
+        public Builder(Function<? super K, ? extends V> loader) {
+            this.loader = Objects.requireNonNull(loader, "loader");
+        }
+
+        public Builder<K, V> bulkLoader(Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> bulkLoader) {
+            this.bulkLoader = bulkLoader;
+            return this;
+        }
+
+        // Bound the cache by number of entries
+        public Builder<K, V> maximumSize(long maximumSize) {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("maximumSize must be >= 0");
+            }
+            this.maximumWeight = maximumSize;
+            this.weigher = null;
+            return this;
+        }
+
+        // Bound the cache by total weight, e.g. bytes, as measured by the weigher
+        public Builder<K, V> maximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("maximumWeight must be >= 0");
+            }
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher, "weigher");
+            return this;
+        }
+
+        // Default time-to-live, counted from when the entry was last written
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be > 0");
+            }
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        // Time-to-idle, counted from when the entry was last read or written
+        public Builder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be > 0");
+            }
+            this.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        // Source of nanosecond time, System.nanoTime unless a test needs a fake clock
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker");
+            return this;
+        }
+
+        public LoadingLFUCache<K, V> build() {
+            return new LoadingLFUCache<>(this);
+        }
+    }
+}
+
+/**
+ * Measures how much of the cache budget an entry uses, e.g. its size in bytes.
+ */
+interface Weigher<K, V> {
+    int weigh(K key, V value);
+}
+
+public class LoadingLFUCacheDemo {
+    public static void main(String[] args) throws InterruptedException {
+        AtomicInteger backendCalls = new AtomicInteger();
+        LoadingLFUCache<String, String> cache = new LoadingLFUCache<>(100, key -> {
+            backendCalls.incrementAndGet();
+            sleep(100);  // Slow backend
+            return "value-" + key;
+        });
+
+        // Eight threads miss on the same key at once, only one load reaches the backend
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.submit(() -> cache.get("user:42"));
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.println(backendCalls.get());  // Returns 1
+
+        // Bulk load: the two misses go to the bulk loader in one call
+        LoadingLFUCache<Integer, String> users = new LoadingLFUCache<>(100, id -> "user-" + id, ids -> {
+            System.out.println("Loading " + ids);  // Loading [2, 3]
+            Map<Integer, String> values = new HashMap<>();
+            for (Integer id : ids) {
+                values.put(id, "user-" + id);
+            }
+            return values;
+        });
+        users.put(1, "user-1");
+        List<Integer> ids = new ArrayList<>();
+        ids.add(1);
+        ids.add(2);
+        ids.add(3);
+        System.out.println(users.getAll(ids));  // {1=user-1, 2=user-2, 3=user-3}
+
+        // Bound by bytes instead of entries: a 1 KiB budget where each char costs 2 bytes
+        LoadingLFUCache<String, String> pages = new LoadingLFUCache.Builder<String, String>(key -> key)
+                .maximumWeight(1024, (key, value) -> 2 * value.length())
+                .build();
+        pages.put("small", "x");
+        pages.put("huge", new String(new char[400]));    // 800 bytes
+        pages.put("bigger", new String(new char[200]));  // 400 more bytes, evicts least frequent
+        System.out.println(pages.weightedSize() <= 1024);  // Returns true
+        pages.setMaximumWeight(100);                       // Shrink the budget at runtime
+        System.out.println(pages.weightedSize());          // Returns 0, both large values evicted
+
+        // Expiry driven by a fake clock
+        AtomicLong clock = new AtomicLong();
+        LoadingLFUCache<String, String> sessions = new LoadingLFUCache.Builder<String, String>(key -> null)
+                .expireAfterAccess(30, TimeUnit.MINUTES)
+                .ticker(clock::get)
+                .build();
+        sessions.put("alice", "token-a");
+        sessions.put("bob", "token-b", 5, TimeUnit.MINUTES);  // Per-entry time-to-live
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(10));
+        System.out.println(sessions.getIfPresent("alice"));  // Returns token-a, idle for 10 of 30 minutes
+        System.out.println(sessions.getIfPresent("bob"));    // Returns null, lived past its 5 minutes
+        clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+        sessions.put("carol", "token-c");                    // Advancing the wheel reclaims alice
+        System.out.println(sessions.size());                 // Returns 1
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,12 +1,54 @@
 // CustomLoggerDemo.java
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Demonstrates the usage of a custom logger in Java.
@@ -24,12 +66,27 @@ public class CustomLoggerDemo {
         // Optionally, set the minimum logging level (default is DEBUG)
         // logger.setLogLevel(LogLevel.INFO);
 
+        // Hand events to a background thread so callers never wait on the appenders
+        logger.startAsync(1024, OverflowPolicy.BLOCK);
+
         // Log messages at various levels
         logger.debug("This is a DEBUG message.");
         logger.info("This is an INFO message.");
         logger.warn("This is a WARN message.");
         logger.error("This is an ERROR message.");
         logger.fatal("This is a FATAL message.");
+
+        // Placeholders are only filled in when the level is enabled
+        logger.debug("Logged {} messages at {} levels.", 5, LogLevel.values().length);
+
+        // Named loggers use the root's level and appenders unless configured otherwise
+        Logger dbLogger = Logger.getLogger("app.db");
+        dbLogger.setLogLevel(LogLevel.WARN);
+        dbLogger.info("Not logged, app.db only logs WARN and above.");
+        dbLogger.warn("This is a WARN message from app.db.");
+
+        // Drain everything still buffered before the application exits
+        logger.shutdown();
     }
 }
 
@@ -59,6 +116,36 @@ enum LogLevel {
  */
 interface Appender {
     void append(String formattedMessage);
+
+    /**
+     * Appends a message formatted into a reusable buffer. The buffer is reused for the
+     * next message, so it must not be kept. Appenders that can copy the characters
+     * straight out override this to avoid creating a String per message.
+     */
+    default void append(StringBuilder formattedMessage) {
+        append(formattedMessage.toString());
+    }
+
+    /**
+     * Appends a buffered message together with the level it was logged at, for
+     * appenders whose behaviour depends on severity. Ignores the level by default.
+     */
+    default void append(LogLevel level, StringBuilder formattedMessage) {
+        append(formattedMessage);
+    }
+
+    /**
+     * Writes out anything the appender is still holding back. No-op by default.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Gives the appender the metrics to report the bytes it writes and its flushes to,
+     * or null to stop. Ignored by appenders that don't write to files themselves.
+     */
+    default void setMetrics(LoggerMetrics metrics) {
+    }
 }
 
 /**
@@ -77,12 +164,45 @@ class ConsoleAppender implements Appender {
 class FileAppender implements Appender {
     private final String filePath;
     private BufferedWriter writer;
+    private CountingOutputStream file;  // counts the encoded bytes for the metrics
+    private char[] chars = new char[256];  // reused to copy buffered messages out
+    private volatile LoggerMetrics metrics;
+
+    /**
+     * Passes bytes through and counts them since the last takeCount().
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long takeCount() {
+            long taken = count;
+            count = 0;
+            return taken;
+        }
+    }
 
     public FileAppender(String filePath) {
         this.filePath = filePath;
         try {
-            // Initialize BufferedWriter in append mode
-            this.writer = new BufferedWriter(new FileWriter(this.filePath, true));
+            // Initialize BufferedWriter in append mode, in the platform's default charset
+            this.file = new CountingOutputStream(new FileOutputStream(this.filePath, true));
+            this.writer = new BufferedWriter(new OutputStreamWriter(file));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -94,138 +214,2739 @@ class FileAppender implements Appender {
             writer.write(formattedMessage);
             writer.newLine();
             writer.flush();
+            recordWrite();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    @Override
+    public synchronized void append(StringBuilder formattedMessage) {
+        int length = formattedMessage.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+        }
+        formattedMessage.getChars(0, length, chars, 0);
+        try {
+            writer.write(chars, 0, length);
+            writer.newLine();
+            writer.flush();
+            recordWrite();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void setMetrics(LoggerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Every append is flushed, so the bytes counted since the last one were just written
+    private void recordWrite() {
+        long bytes = file.takeCount();
+        LoggerMetrics current = metrics;
+        if (current != null) {
+            current.recordFlush(bytes);
+        }
+    }
 }
 
 /**
- * Specifies how log messages are formatted.
+ * File appender that writes lines in batches instead of flushing after every one.
+ *
+ * Lines are encoded as UTF-8 straight into a large direct buffer and written to a
+ * FileChannel in one call when the buffer fills up, when the oldest unwritten line is
+ * older than maxDelayMillis, or when a line at or above flushLevel arrives. A daemon
+ * thread enforces the delay while no new lines come in.
  */
-interface Formatter {
-    String format(LogLevel level, String message);
+class BatchingFileAppender implements Appender {
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 200;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = LineEncoder.newUtf8Encoder();
+    private final long maxDelayNanos;
+    private final LogLevel flushLevel;
+    private final ScheduledExecutorService flusher;
+
+    private char[] chars = new char[256];  // reused to copy messages out for the encoder
+    private CharBuffer charView = CharBuffer.wrap(chars);
+    private long oldestUnwrittenNanos;
+    private long flushCount;
+    private volatile LoggerMetrics metrics;
+
+    /**
+     * Batches up to 256 KiB or 200 ms of lines and writes ERROR and FATAL immediately.
+     */
+    public BatchingFileAppender(String filePath) throws IOException {
+        this(filePath, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_DELAY_MILLIS, LogLevel.ERROR);
+    }
+
+    /**
+     * @param filePath       The file to append to.
+     * @param bufferSize     Bytes collected before a batch is written.
+     * @param maxDelayMillis Longest a line may wait in the buffer.
+     * @param flushLevel     Lines at or above this level are written immediately,
+     *                       together with everything before them. Null to never
+     *                       flush on level.
+     */
+    public BatchingFileAppender(String filePath, int bufferSize, long maxDelayMillis, LogLevel flushLevel)
+            throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 64));
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.flushLevel = flushLevel;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "log-batch-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, maxDelayMillis);
+        flusher.scheduleWithFixedDelay(this::flushIfDue, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void append(String formattedMessage) {
+        appendLine(null, formattedMessage, null);
+    }
+
+    @Override
+    public void append(StringBuilder formattedMessage) {
+        appendLine(null, null, formattedMessage);
+    }
+
+    @Override
+    public void append(LogLevel level, StringBuilder formattedMessage) {
+        appendLine(level, null, formattedMessage);
+    }
+
+    /**
+     * Writes every buffered line to the file.
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes out the remaining lines, stops the flusher thread and closes the file.
+     */
+    public synchronized void close() {
+        flusher.shutdown();
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void setMetrics(LoggerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Number of batches written to the file so far.
+     */
+    public synchronized long flushCount() {
+        return flushCount;
+    }
+
+    private synchronized void appendLine(LogLevel level, String text, StringBuilder builder) {
+        int length = text != null ? text.length() : builder.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+            charView = CharBuffer.wrap(chars);
+        }
+        if (text != null) {
+            text.getChars(0, length, chars, 0);
+        } else {
+            builder.getChars(0, length, chars, 0);
+        }
+        try {
+            if (buffer.position() == 0) {
+                oldestUnwrittenNanos = System.nanoTime();
+            }
+            encode(length);
+            if ((flushLevel != null && level != null && level.getLevel() >= flushLevel.getLevel())
+                    || System.nanoTime() - oldestUnwrittenNanos >= maxDelayNanos) {
+                writeBuffer();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Encodes chars[0, length) plus a line separator, writing out full batches on the way
+    private void encode(int length) throws IOException {
+        charView.clear().limit(length);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(charView, buffer, true);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else if (encoder.flush(buffer).isOverflow()) {
+                writeBuffer();
+            } else {
+                break;
+            }
+        }
+        if (buffer.remaining() < LINE_SEPARATOR.length) {
+            writeBuffer();
+        }
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        oldestUnwrittenNanos = System.nanoTime();
+        flushCount++;
+        LoggerMetrics current = metrics;
+        if (current != null) {
+            current.recordFlush(bytes);
+        }
+    }
+
+    private synchronized void flushIfDue() {
+        if (buffer.position() > 0 && System.nanoTime() - oldestUnwrittenNanos >= maxDelayNanos) {
+            flush();
+        }
+    }
 }
 
 /**
- * A simple formatter that includes timestamp, log level, and message.
+ * UTF-8 encoder for log lines that reuses its char and byte arrays. Not thread-safe,
+ * appenders keep one per thread or use it under their own lock.
  */
-class SimpleFormatter implements Formatter {
-    private final SimpleDateFormat dateFormat;
+class LineEncoder {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
 
-    public SimpleFormatter() {
-        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    private final CharsetEncoder encoder = newUtf8Encoder();
+    private char[] chars = new char[256];
+    private CharBuffer charView = CharBuffer.wrap(chars);
+    private byte[] bytes = new byte[1024];
+    private ByteBuffer byteView = ByteBuffer.wrap(bytes);
+
+    /**
+     * Encodes the line plus a line separator into bytes and returns how many of
+     * them were written. Valid until the next call.
+     */
+    int encode(CharSequence line) {
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+            charView = CharBuffer.wrap(chars);
+        }
+        int maxBytes = length * 3 + LINE_SEPARATOR.length;  // UTF-8 needs at most 3 bytes per char
+        if (bytes.length < maxBytes) {
+            bytes = new byte[Math.max(maxBytes, 2 * bytes.length)];
+            byteView = ByteBuffer.wrap(bytes);
+        }
+        if (line instanceof String) {
+            ((String) line).getChars(0, length, chars, 0);
+        } else {
+            ((StringBuilder) line).getChars(0, length, chars, 0);
+        }
+        charView.clear().limit(length);
+        byteView.clear();
+        encoder.reset();
+        encoder.encode(charView, byteView, true);
+        encoder.flush(byteView);
+        byteView.put(LINE_SEPARATOR);
+        return byteView.position();
     }
 
-    @Override
-    public String format(LogLevel level, String message) {
-        String timestamp = dateFormat.format(new Date());
-        return String.format("[%s] [%s] %s", timestamp, level.name(), message);
+    /**
+     * The bytes of the last encoded line.
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * A UTF-8 encoder that writes '?' for a lone surrogate, like String.getBytes, where
+     * a default encoder would stop and drop the rest of the line.
+     */
+    static CharsetEncoder newUtf8Encoder() {
+        return StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
     }
 }
 
 /**
- * The core logger that manages logging operations.
+ * Appender that copies lines into a memory-mapped window of the log file, so a write
+ * costs a memory copy rather than a system call. The OS writes the pages back on its
+ * own, and they survive a crash of the process.
+ *
+ * Producers reserve space in the current region with a single atomic add and copy
+ * their bytes in parallel. The producer whose reservation runs past the end maps the
+ * next region starting exactly where the last complete line ended, so the file has
+ * no gaps. If mapping fails, that producer's append throws and the next one to run
+ * past the end tries again.
+ *
+ * Mapping extends the file with zero bytes; they are trimmed on close. The pages
+ * can't be trimmed while they are mapped, so after a crash the file ends in up to one
+ * region of NUL bytes after its last line. Tools that read it meanwhile see them;
+ * the next MappedFileAppender opened on the file trims them.
  */
-class Logger {
-    private LogLevel currentLevel;
-    private final Formatter formatter;
-    private final List<Appender> appenders;
+class MappedFileAppender implements Appender {
+    private static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
 
-    // Singleton instance
-    private static Logger instance;
+    private final FileChannel channel;
+    private final int regionSize;
+    private final ThreadLocal<LineEncoder> encoders = ThreadLocal.withInitial(LineEncoder::new);
+    private volatile Region region;
+    private volatile LoggerMetrics metrics;
 
     /**
-     * Private constructor to enforce singleton pattern.
-     *
-     * @param level     The minimum logging level.
-     * @param formatter The formatter to use for log messages.
+     * A mapped window of the file and how many of its bytes have been handed out.
      */
-    private Logger(LogLevel level, Formatter formatter) {
-        this.currentLevel = level;
-        this.formatter = formatter;
-        this.appenders = new ArrayList<>();
+    private static final class Region {
+        final MappedByteBuffer buffer;
+        final long fileOffset;
+        final int size;
+        final AtomicInteger reserved;
+
+        Region(MappedByteBuffer buffer, long fileOffset, int size, int reserved) {
+            this.buffer = buffer;
+            this.fileOffset = fileOffset;
+            this.size = size;
+            this.reserved = new AtomicInteger(reserved);
+        }
     }
 
     /**
-     * Retrieves the singleton instance of the Logger.
-     *
-     * @return The Logger instance.
+     * Maps the file in 64 MiB regions.
      */
-    public static synchronized Logger getInstance() {
-        if (instance == null) {
-            // Default configuration: DEBUG level with SimpleFormatter
-            instance = new Logger(LogLevel.DEBUG, new SimpleFormatter());
-            // Add default ConsoleAppender
-            instance.addAppender(new ConsoleAppender());
-        }
-        return instance;
+    public MappedFileAppender(String filePath) throws IOException {
+        this(filePath, DEFAULT_REGION_SIZE);
     }
 
-    // or
     /**
-    * public static Logger getLogger(){
-    *     if(logger == null){
-    *        synchronized(Logger.class)
-    *        {
-    *            if(logger == null) logger = new Logger();
-    *        }
-    *        return logger;
-    *     }
-    *}
-    */
+     * @param filePath   The file to append to.
+     * @param regionSize Bytes mapped at a time. Longer lines get a region of their own.
+     */
+    public MappedFileAppender(String filePath, int regionSize) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.regionSize = regionSize;
+        this.region = map(trimmedLength(), regionSize);
+    }
+
+    @Override
+    public void append(String formattedMessage) {
+        write(formattedMessage);
+    }
+
+    @Override
+    public void append(StringBuilder formattedMessage) {
+        write(formattedMessage);
+    }
 
     /**
-     * Adds an appender to the logger.
-     *
-     * @param appender The appender to add.
+     * Forces the pages written so far out to the storage device.
      */
-    public void addAppender(Appender appender) {
-        this.appenders.add(appender);
+    @Override
+    public void flush() {
+        region.buffer.force();
+        LoggerMetrics current = metrics;
+        if (current != null) {
+            current.recordFlush(0);
+        }
+    }
+
+    // Bytes are counted as they are copied in, flushes are the explicit forces to disk
+    @Override
+    public void setMetrics(LoggerMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
-     * Sets the minimum logging level.
-     *
-     * @param level The logging level to set.
+     * Forces the written pages out, trims the unused tail of the mapping off the file
+     * and closes it. Must not race with append().
      */
-    public void setLogLevel(LogLevel level) {
-        this.currentLevel = level;
+    public synchronized void close() {
+        Region current = region;
+        try {
+            current.buffer.force();
+            channel.truncate(current.fileOffset + Math.min(current.reserved.get(), current.size));
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
-    // Logging methods for various levels
-    public void debug(String message) {
-        log(LogLevel.DEBUG, message);
+    private void write(CharSequence formattedMessage) {
+        LineEncoder lineEncoder = encoders.get();
+        int length = lineEncoder.encode(formattedMessage);
+        while (true) {
+            Region current = region;
+            int start = current.reserved.getAndAdd(length);
+            if (start + length <= current.size) {
+                current.buffer.put(start, lineEncoder.bytes(), 0, length);
+                LoggerMetrics currentMetrics = metrics;
+                if (currentMetrics != null) {
+                    currentMetrics.recordBytes(length);
+                }
+                return;
+            }
+            if (start <= current.size) {
+                // Every earlier reservation fit, so the file is complete up to start
+                roll(current, start, length);
+            } else {
+                while (region == current) {
+                    Thread.onSpinWait();  // someone else is mapping the next region
+                }
+            }
+        }
     }
 
-    public void info(String message) {
-        log(LogLevel.INFO, message);
+    private synchronized void roll(Region full, int usedBytes, int lineLength) {
+        Region next = null;
+        try {
+            next = map(full.fileOffset + usedBytes, Math.max(regionSize, lineLength));
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new UncheckedIOException(e);
+        } finally {
+            // On failure reopen the full region at the last complete line, so the
+            // producers spinning in write() move on and the next one retries the roll
+            region = next != null ? next : new Region(full.buffer, full.fileOffset, full.size, usedBytes);
+        }
     }
 
-    public void warn(String message) {
-        log(LogLevel.WARN, message);
+    private Region map(long fileOffset, int size) throws IOException {
+        return new Region(channel.map(FileChannel.MapMode.READ_WRITE, fileOffset, size), fileOffset, size, 0);
     }
 
-    public void error(String message) {
-        log(LogLevel.ERROR, message);
+    // Length of the file without the zero padding a crashed run left after its last line
+    private long trimmedLength() throws IOException {
+        long end = channel.size();
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        while (end > 0) {
+            long start = Math.max(0, end - chunk.capacity());
+            chunk.clear().limit((int) (end - start));
+            channel.read(chunk, start);
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) != 0) {
+                    long length = start + i + 1;
+                    channel.truncate(length);
+                    return length;
+                }
+            }
+            end = start;
+        }
+        channel.truncate(0);
+        return 0;
     }
+}
 
-    public void fatal(String message) {
-        log(LogLevel.FATAL, message);
+/**
+ * File appender that rolls the active file over to a numbered segment when it grows
+ * past a size limit or a time period ends, e.g. every day at midnight.
+ *
+ * Rolling itself is only a rename on the logging thread. Segments are gzipped by a
+ * background thread, which then deletes the oldest segments until both the segment
+ * count and their total size are within the retention limits. Segments that a
+ * previous run rolled but never compressed are picked up at startup.
+ */
+class RollingFileAppender implements Appender {
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final String PARTIAL_SUFFIX = ".tmp";
+
+    private final Path activeFile;
+    private final long maxFileSize;
+    private final long rollIntervalMillis;
+    private final int maxSegments;
+    private final long maxTotalBytes;
+    private final SimpleDateFormat segmentDateFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
+    private final LineEncoder encoder = new LineEncoder();
+    private final ExecutorService compressor;
+
+    private FileChannel channel;
+    private long fileSize;
+    private volatile LoggerMetrics metrics;
+    private long segmentStartMillis;
+    private long nextRollMillis;
+    private long nextSequence;  // only ever grows, so a segment's sequence gives its age
+
+    private RollingFileAppender(Builder builder) throws IOException {
+        this.activeFile = Paths.get(builder.filePath).toAbsolutePath();
+        this.maxFileSize = builder.maxFileSize;
+        this.rollIntervalMillis = builder.rollIntervalMillis;
+        this.maxSegments = builder.maxSegments;
+        this.maxTotalBytes = builder.maxTotalBytes;
+        this.compressor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "log-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        open(System.currentTimeMillis());
+        List<Path> existing = segments();
+        if (!existing.isEmpty()) {
+            // Continue after the newest segment of earlier runs
+            nextSequence = sequenceOf(existing.get(existing.size() - 1)) + 1;
+        }
+        for (Path segment : existing) {
+            if (!segment.getFileName().toString().endsWith(COMPRESSED_SUFFIX)) {
+                compressor.execute(() -> compress(segment));
+            }
+        }
+        compressor.execute(this::applyRetention);
+    }
+
+    @Override
+    public void append(String formattedMessage) {
+        write(formattedMessage);
+    }
+
+    @Override
+    public void append(StringBuilder formattedMessage) {
+        write(formattedMessage);
     }
 
     /**
-     * Logs a message at the specified logging level.
-     *
-     * @param level   The severity level of the log.
-     * @param message The message to log.
+     * Closes the active file. Segments already handed to the compressor are still
+     * compressed, in the background.
      */
-    private void log(LogLevel level, String message) {
-        if (level.getLevel() >= this.currentLevel.getLevel()) {
-            String formattedMessage = formatter.format(level, message);
-            for (Appender appender : appenders) {
-                appender.append(formattedMessage);
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        compressor.shutdown();
+    }
+
+    @Override
+    public void setMetrics(LoggerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private synchronized void write(CharSequence formattedMessage) {
+        int length = encoder.encode(formattedMessage);
+        try {
+            long now = System.currentTimeMillis();
+            if (fileSize > 0 && (fileSize + length > maxFileSize || now >= nextRollMillis)) {
+                roll(now);
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(encoder.bytes(), 0, length);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            fileSize += length;
+            LoggerMetrics current = metrics;
+            if (current != null) {
+                current.recordFlush(length);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void open(long now) throws IOException {
+        channel = FileChannel.open(activeFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        segmentStartMillis = now;
+        nextRollMillis = nextBoundary(now);
+    }
+
+    private void roll(long now) throws IOException {
+        channel.close();
+        String stamp = segmentDateFormat.format(new Date(segmentStartMillis));
+        Path segment = activeFile.resolveSibling(activeFile.getFileName() + "." + stamp + "." + nextSequence++);
+        Files.move(activeFile, segment);
+        open(now);
+        Path rolled = segment;
+        compressor.execute(() -> {
+            compress(rolled);
+            applyRetention();
+        });
+    }
+
+    // Start of the next period in local time, so daily files roll at midnight
+    private long nextBoundary(long now) {
+        if (rollIntervalMillis <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long offset = TimeZone.getDefault().getOffset(now);
+        return (Math.floorDiv(now + offset, rollIntervalMillis) + 1) * rollIntervalMillis - offset;
+    }
+
+    // Runs on the compressor thread
+    private void compress(Path segment) {
+        Path partial = Paths.get(segment + COMPRESSED_SUFFIX + PARTIAL_SUFFIX);
+        Path compressed = Paths.get(segment + COMPRESSED_SUFFIX);
+        try {
+            try (InputStream in = Files.newInputStream(segment);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+                in.transferTo(out);
             }
+            Files.move(partial, compressed, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segment);
+        } catch (NoSuchFileException e) {
+            // Retention already deleted the segment while it waited to be compressed
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // left for the next run, segments() skips partial files
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Runs on the compressor thread
+    private void applyRetention() {
+        try {
+            List<Path> segments = segments();
+            long totalBytes = 0;
+            for (Path segment : segments) {
+                totalBytes += Files.size(segment);
+            }
+            // segments() lists the oldest first
+            for (int i = 0; i < segments.size(); i++) {
+                if (segments.size() - i <= maxSegments && totalBytes <= maxTotalBytes) {
+                    break;
+                }
+                totalBytes -= Files.size(segments.get(i));
+                Files.delete(segments.get(i));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Rolled segments of the active file, compressed or not, oldest first
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        String prefix = activeFile.getFileName() + ".";
+        try (DirectoryStream<Path> directory = Files.newDirectoryStream(activeFile.getParent(), prefix + "*")) {
+            for (Path path : directory) {
+                if (segmentName(path) != null) {
+                    segments.add(path);
+                }
+            }
+        }
+        // "<stamp>.<sequence>", ordered by the sequence, which only ever grows
+        segments.sort(Comparator.comparingLong(this::sequenceOf));
+        return segments;
+    }
+
+    private long sequenceOf(Path segment) {
+        return Long.parseLong(segmentName(segment)[1]);
+    }
+
+    // The stamp and sequence of a segment file name, or null for any other file
+    private String[] segmentName(Path path) {
+        String name = path.getFileName().toString();
+        name = name.substring(activeFile.getFileName().toString().length() + 1);
+        if (name.endsWith(COMPRESSED_SUFFIX)) {
+            name = name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+        }
+        String[] parts = name.split("\\.");
+        if (parts.length != 2 || parts[0].length() != 15 || !parts[1].matches("\\d{1,18}")) {
+            return null;
+        }
+        return parts;
+    }
+
+    public static class Builder {
+        // Required parameters
+        private final String filePath;
+
+        // Optional parameters - initialized to default values
+        private long maxFileSize = Long.MAX_VALUE;
+        private long rollIntervalMillis;
+        private int maxSegments = Integer.MAX_VALUE;
+        private long maxTotalBytes = Long.MAX_VALUE;
+
+        public Builder(String filePath) {
+            this.filePath = Objects.requireNonNull(filePath, "filePath");
+        }
+
+        // Roll once the active file would grow past this many bytes
+        public Builder maxFileSize(long maxFileSize) {
+            if (maxFileSize <= 0) {
+                throw new IllegalArgumentException("maxFileSize must be > 0");
+            }
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        // Roll at the end of every period, aligned to local midnight for whole days
+        public Builder rollEvery(long duration, TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be > 0");
+            }
+            this.rollIntervalMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        // Keep at most this many rolled segments
+        public Builder maxSegments(int maxSegments) {
+            if (maxSegments < 0) {
+                throw new IllegalArgumentException("maxSegments must be >= 0");
+            }
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        // Keep rolled segments within this many bytes on disk in total
+        public Builder maxTotalBytes(long maxTotalBytes) {
+            if (maxTotalBytes < 0) {
+                throw new IllegalArgumentException("maxTotalBytes must be >= 0");
+            }
+            this.maxTotalBytes = maxTotalBytes;
+            return this;
+        }
+
+        public RollingFileAppender build() throws IOException {
+            return new RollingFileAppender(this);
+        }
+    }
+}
+
+/**
+ * Record layout shared by BinaryLogAppender and BinaryLogDecoder.
+ *
+ * A file is a sequence of records, each a varint body length followed by the body.
+ * The first byte of a body is its type:
+ * <pre>
+ *   SESSION   magic "BLOG", version                  starts every run of the writer
+ *   TEMPLATE  varint id, UTF-8 template text         precedes the first use of an id
+ *   EVENT     level, varint timestamp delta, varint template id, argument count, arguments
+ *   MESSAGE   level, varint timestamp delta, UTF-8 text      for messages without a template
+ * </pre>
+ * Timestamps are zigzag varints relative to the previous record of the session, in
+ * epoch milliseconds. Each argument is a tag byte followed by a zigzag varint for
+ * integers, 8 bytes for doubles, 4 bytes for floats, or a varint length and UTF-8
+ * bytes for strings. Version 2 added the float tag, a version 2 reader reads both.
+ */
+final class BinaryLogFormat {
+    static final int MAGIC = 0x424C4F47;  // "BLOG"
+    static final byte VERSION = 2;
+
+    static final byte SESSION = 0;
+    static final byte TEMPLATE = 1;
+    static final byte EVENT = 2;
+    static final byte MESSAGE = 3;
+
+    static final byte ARG_NULL = 0;
+    static final byte ARG_LONG = 1;
+    static final byte ARG_DOUBLE = 2;
+    static final byte ARG_STRING = 3;
+    static final byte ARG_FLOAT = 4;
+
+    private BinaryLogFormat() {
+    }
+
+    static void putVarLong(ByteBuffer out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.put((byte) zigzag);
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
+
+/**
+ * Appender that stores log events in the compact binary layout of BinaryLogFormat
+ * instead of text. Each template is written once and events only carry its id, the
+ * level, a timestamp delta and the raw argument values, so the logging thread never
+ * formats text and the file is several times smaller. BinaryLogDecoder turns the
+ * file back into the usual text layout.
+ *
+ * Used through Logger.useBinaryAppender(). Templates are expected to be constants;
+ * every distinct template string gets an id that is kept until the appender closes.
+ * Records are collected in a direct buffer and written to a FileChannel when it fills,
+ * when an event at or above flushLevel arrives, or on flush().
+ */
+class BinaryLogAppender implements Appender {
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_LENGTH_PREFIX = 5;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final LogLevel flushLevel;
+    private final Map<String, Integer> templateIds = new HashMap<>();
+    private ByteBuffer record = ByteBuffer.allocate(1024);  // body of the record being encoded
+    private long lastTimestampMillis;
+    private volatile LoggerMetrics metrics;
+
+    public BinaryLogAppender(String filePath) throws IOException {
+        this(filePath, DEFAULT_BUFFER_SIZE, LogLevel.ERROR);
+    }
+
+    /**
+     * @param filePath   The file to append to.
+     * @param bufferSize Bytes collected before they are written.
+     * @param flushLevel Events at or above this level are written immediately. Null to
+     *                   only write when the buffer fills or on flush().
+     */
+    public BinaryLogAppender(String filePath, int bufferSize, LogLevel flushLevel) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 64));
+        this.flushLevel = flushLevel;
+        synchronized (this) {
+            record.clear();
+            record.put(BinaryLogFormat.SESSION).putInt(BinaryLogFormat.MAGIC).put(BinaryLogFormat.VERSION);
+            endRecord(null);
+        }
+    }
+
+    /**
+     * Stores an already formatted line as a MESSAGE record, for use as a plain appender.
+     */
+    @Override
+    public void append(String formattedMessage) {
+        message(LogLevel.INFO, System.currentTimeMillis(), formattedMessage);
+    }
+
+    @Override
+    public void append(LogLevel level, StringBuilder formattedMessage) {
+        message(level, System.currentTimeMillis(), formattedMessage.toString());
+    }
+
+    synchronized void message(LogLevel level, long timestampMillis, String message) {
+        beginRecord(BinaryLogFormat.MESSAGE, level, timestampMillis);
+        putUtf8(message, false);
+        endRecord(level);
+    }
+
+    synchronized void event(LogLevel level, long timestampMillis, String template, Object arg) {
+        beginEvent(level, timestampMillis, template, 1);
+        putArgument(arg);
+        endRecord(level);
+    }
+
+    synchronized void event(LogLevel level, long timestampMillis, String template, Object arg1, Object arg2) {
+        beginEvent(level, timestampMillis, template, 2);
+        putArgument(arg1);
+        putArgument(arg2);
+        endRecord(level);
+    }
+
+    synchronized void event(LogLevel level, long timestampMillis, String template, Object[] args) {
+        int count = Math.min(args.length, 255);
+        beginEvent(level, timestampMillis, template, count);
+        for (int i = 0; i < count; i++) {
+            putArgument(args[i]);
+        }
+        endRecord(level);
+    }
+
+    synchronized void event(LogLevel level, long timestampMillis, String template, long arg) {
+        beginEvent(level, timestampMillis, template, 1);
+        putLong(arg);
+        endRecord(level);
+    }
+
+    synchronized void event(LogLevel level, long timestampMillis, String template, long arg1, long arg2) {
+        beginEvent(level, timestampMillis, template, 2);
+        putLong(arg1);
+        putLong(arg2);
+        endRecord(level);
+    }
+
+    synchronized void event(LogLevel level, long timestampMillis, String template, double arg) {
+        beginEvent(level, timestampMillis, template, 1);
+        ensureRecordCapacity(9);
+        record.put(BinaryLogFormat.ARG_DOUBLE).putDouble(arg);
+        endRecord(level);
+    }
+
+    synchronized void event(LogLevel level, long timestampMillis, String template, char arg) {
+        beginEvent(level, timestampMillis, template, 1);
+        ensureRecordCapacity(1);
+        record.put(BinaryLogFormat.ARG_STRING);
+        putUtf8(String.valueOf(arg), true);
+        endRecord(level);
+    }
+
+    synchronized void event(LogLevel level, long timestampMillis, String template, float arg) {
+        beginEvent(level, timestampMillis, template, 1);
+        ensureRecordCapacity(5);
+        record.put(BinaryLogFormat.ARG_FLOAT).putFloat(arg);
+        endRecord(level);
+    }
+
+    /**
+     * Writes every buffered record to the file.
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void setMetrics(LoggerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private void beginEvent(LogLevel level, long timestampMillis, String template, int argumentCount) {
+        Integer id = templateIds.get(template);
+        if (id == null) {
+            id = templateIds.size();
+            templateIds.put(template, id);
+            record.clear();
+            record.put(BinaryLogFormat.TEMPLATE);
+            BinaryLogFormat.putVarLong(record, id);
+            putUtf8(template, false);
+            endRecord(null);
+        }
+        beginRecord(BinaryLogFormat.EVENT, level, timestampMillis);
+        BinaryLogFormat.putVarLong(record, id);
+        record.put((byte) argumentCount);
+    }
+
+    private void beginRecord(byte type, LogLevel level, long timestampMillis) {
+        record.clear();
+        record.put(type).put((byte) level.ordinal());
+        BinaryLogFormat.putVarLong(record, timestampMillis - lastTimestampMillis);
+        lastTimestampMillis = timestampMillis;
+    }
+
+    private void putArgument(Object arg) {
+        if (arg == null) {
+            ensureRecordCapacity(1);
+            record.put(BinaryLogFormat.ARG_NULL);
+        } else if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            putLong(((Number) arg).longValue());
+        } else if (arg instanceof Double) {
+            ensureRecordCapacity(9);
+            record.put(BinaryLogFormat.ARG_DOUBLE).putDouble((Double) arg);
+        } else if (arg instanceof Float) {
+            ensureRecordCapacity(5);
+            record.put(BinaryLogFormat.ARG_FLOAT).putFloat((Float) arg);
+        } else {
+            ensureRecordCapacity(1);
+            record.put(BinaryLogFormat.ARG_STRING);
+            putUtf8(String.valueOf(arg), true);
+        }
+    }
+
+    private void putLong(long value) {
+        ensureRecordCapacity(11);
+        record.put(BinaryLogFormat.ARG_LONG);
+        BinaryLogFormat.putVarLong(record, value);
+    }
+
+    // Strings inside an event carry their length, a trailing string runs to the end of the record
+    private void putUtf8(String text, boolean lengthPrefixed) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ensureRecordCapacity(bytes.length + 10);
+        if (lengthPrefixed) {
+            BinaryLogFormat.putVarLong(record, bytes.length);
+        }
+        record.put(bytes);
+    }
+
+    private void ensureRecordCapacity(int bytes) {
+        if (record.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes));
+            record.flip();
+            larger.put(record);
+            record = larger;
+        }
+    }
+
+    // Moves the encoded body behind its length into the write buffer
+    private void endRecord(LogLevel level) {
+        try {
+            record.flip();
+            if (buffer.remaining() < record.remaining() + MAX_LENGTH_PREFIX) {
+                writeBuffer();
+            }
+            if (buffer.remaining() < record.remaining() + MAX_LENGTH_PREFIX) {
+                // Larger than the whole buffer, write it straight through
+                ByteBuffer prefix = ByteBuffer.allocate(MAX_LENGTH_PREFIX);
+                BinaryLogFormat.putVarLong(prefix, record.remaining());
+                prefix.flip();
+                int bytes = prefix.remaining() + record.remaining();
+                while (prefix.hasRemaining() || record.hasRemaining()) {
+                    channel.write(new ByteBuffer[] {prefix, record});
+                }
+                LoggerMetrics current = metrics;
+                if (current != null) {
+                    current.recordFlush(bytes);
+                }
+            } else {
+                BinaryLogFormat.putVarLong(buffer, record.remaining());
+                buffer.put(record);
+            }
+            if (flushLevel != null && level != null && level.getLevel() >= flushLevel.getLevel()) {
+                writeBuffer();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        LoggerMetrics current = metrics;
+        if (current != null) {
+            current.recordFlush(bytes);
+        }
+    }
+}
+
+/**
+ * Specifies how log messages are formatted.
+ */
+interface Formatter {
+    String format(LogLevel level, String message);
+
+    /**
+     * Formats a message that was logged at the given time. Async logging formats
+     * events later on another thread, so the timestamp has to travel with the event.
+     *
+     * @param timestampMillis When the message was logged, in epoch milliseconds.
+     */
+    default String format(LogLevel level, String message, long timestampMillis) {
+        return format(level, message);
+    }
+
+    /**
+     * Formats a message into the given buffer instead of returning a new String.
+     * Garbage-free formatters override this; the default appends format()'s result.
+     */
+    default void formatTo(LogLevel level, String message, long timestampMillis, StringBuilder out) {
+        out.append(format(level, message, timestampMillis));
+    }
+}
+
+/**
+ * A simple formatter that includes timestamp, log level, and message.
+ */
+class SimpleFormatter implements Formatter {
+    private final SimpleDateFormat dateFormat;
+
+    public SimpleFormatter() {
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    }
+
+    @Override
+    public String format(LogLevel level, String message) {
+        return format(level, message, System.currentTimeMillis());
+    }
+
+    @Override
+    public String format(LogLevel level, String message, long timestampMillis) {
+        String timestamp = dateFormat.format(new Date(timestampMillis));
+        return String.format("[%s] [%s] %s", timestamp, level.name(), message);
+    }
+}
+
+/**
+ * Formatter with the same "[yyyy-MM-dd HH:mm:ss.SSS] [LEVEL] message" layout as
+ * SimpleFormatter that allocates nothing in steady state.
+ *
+ * Each thread keeps the text of the last timestamp it formatted. Within the same
+ * millisecond it is reused as-is, within the same second only the milliseconds are
+ * rewritten, and the full date is only recomputed, with plain arithmetic, once a
+ * second. Safe to share between threads, unlike SimpleDateFormat.
+ */
+class GarbageFreeFormatter implements Formatter {
+    private static final int TIMESTAMP_LENGTH = 23;
+
+    private final TimeZone timeZone;
+    private final ThreadLocal<TimestampText> timestamps = ThreadLocal.withInitial(TimestampText::new);
+
+    public GarbageFreeFormatter() {
+        this(TimeZone.getDefault());
+    }
+
+    public GarbageFreeFormatter(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    @Override
+    public String format(LogLevel level, String message) {
+        return format(level, message, System.currentTimeMillis());
+    }
+
+    @Override
+    public String format(LogLevel level, String message, long timestampMillis) {
+        StringBuilder out = new StringBuilder(TIMESTAMP_LENGTH + 12 + message.length());
+        formatTo(level, message, timestampMillis, out);
+        return out.toString();
+    }
+
+    @Override
+    public void formatTo(LogLevel level, String message, long timestampMillis, StringBuilder out) {
+        char[] timestamp = timestamps.get().update(timestampMillis, timeZone);
+        out.append('[').append(timestamp, 0, TIMESTAMP_LENGTH).append("] [")
+                .append(level.name()).append("] ").append(message);
+    }
+
+    /**
+     * Per-thread "yyyy-MM-dd HH:mm:ss.SSS" text of the last formatted millisecond.
+     */
+    private static final class TimestampText {
+        final char[] text = new char[TIMESTAMP_LENGTH];
+        long cachedMillis = Long.MIN_VALUE;
+        long cachedSecond = Long.MIN_VALUE;
+        long offsetMillis;
+
+        char[] update(long millis, TimeZone timeZone) {
+            if (millis == cachedMillis) {
+                return text;
+            }
+            long second = Math.floorDiv(millis, 1000);
+            if (second != cachedSecond) {
+                offsetMillis = timeZone.getOffset(millis);
+                writeDateTime(Math.floorDiv(millis + offsetMillis, 1000));
+                cachedSecond = second;
+            }
+            writeDigits(Math.floorMod(millis + offsetMillis, 1000), 20, 3);
+            cachedMillis = millis;
+            return text;
+        }
+
+        private void writeDateTime(long localSecond) {
+            long epochDay = Math.floorDiv(localSecond, 86400);
+            int secondOfDay = Math.floorMod(localSecond, 86400);
+
+            // Civil date from days since 1970-01-01 (proleptic Gregorian)
+            long z = epochDay + 719468;
+            long era = Math.floorDiv(z, 146097);
+            long dayOfEra = z - era * 146097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long shiftedMonth = (5 * dayOfYear + 2) / 153;
+            long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+            long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+            long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+            writeDigits(year, 0, 4);
+            text[4] = '-';
+            writeDigits(month, 5, 2);
+            text[7] = '-';
+            writeDigits(day, 8, 2);
+            text[10] = ' ';
+            writeDigits(secondOfDay / 3600, 11, 2);
+            text[13] = ':';
+            writeDigits(secondOfDay / 60 % 60, 14, 2);
+            text[16] = ':';
+            writeDigits(secondOfDay % 60, 17, 2);
+            text[19] = '.';
+        }
+
+        private void writeDigits(long value, int offset, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                text[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+    }
+}
+
+/**
+ * Fills "{}" placeholders in a log message template with arguments, in order, e.g.
+ * format("user {} took {} ms", name, 42) gives "user alice took 42 ms".
+ *
+ * Placeholders without an argument stay as "{}" and arguments without a placeholder
+ * are ignored. The text is built in a reused per-thread buffer, so formatting only
+ * allocates the resulting String, and primitive arguments are never boxed.
+ */
+final class MessageTemplate {
+    private static final int MAX_RETAINED_LENGTH = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private MessageTemplate() {
+    }
+
+    static String format(String template, Object arg) {
+        StringBuilder out = start();
+        int next = appendArgument(out, template, 0);
+        if (next >= 0) {
+            out.append(arg);
+            next = appendArgument(out, template, next);
+        }
+        return finish(out, template, next);
+    }
+
+    static String format(String template, Object arg1, Object arg2) {
+        StringBuilder out = start();
+        int next = appendArgument(out, template, 0);
+        if (next >= 0) {
+            out.append(arg1);
+            next = appendArgument(out, template, next);
+        }
+        if (next >= 0) {
+            out.append(arg2);
+            next = appendArgument(out, template, next);
+        }
+        return finish(out, template, next);
+    }
+
+    static String format(String template, Object... args) {
+        StringBuilder out = start();
+        int next = appendArgument(out, template, 0);
+        for (int i = 0; i < args.length && next >= 0; i++) {
+            out.append(args[i]);
+            next = appendArgument(out, template, next);
+        }
+        return finish(out, template, next);
+    }
+
+    static String format(String template, long arg) {
+        StringBuilder out = start();
+        int next = appendArgument(out, template, 0);
+        if (next >= 0) {
+            out.append(arg);
+            next = appendArgument(out, template, next);
+        }
+        return finish(out, template, next);
+    }
+
+    static String format(String template, long arg1, long arg2) {
+        StringBuilder out = start();
+        int next = appendArgument(out, template, 0);
+        if (next >= 0) {
+            out.append(arg1);
+            next = appendArgument(out, template, next);
+        }
+        if (next >= 0) {
+            out.append(arg2);
+            next = appendArgument(out, template, next);
+        }
+        return finish(out, template, next);
+    }
+
+    static String format(String template, double arg) {
+        StringBuilder out = start();
+        int next = appendArgument(out, template, 0);
+        if (next >= 0) {
+            out.append(arg);
+            next = appendArgument(out, template, next);
+        }
+        return finish(out, template, next);
+    }
+
+    static String format(String template, char arg) {
+        StringBuilder out = start();
+        int next = appendArgument(out, template, 0);
+        if (next >= 0) {
+            out.append(arg);
+            next = appendArgument(out, template, next);
+        }
+        return finish(out, template, next);
+    }
+
+    static String format(String template, float arg) {
+        StringBuilder out = start();
+        int next = appendArgument(out, template, 0);
+        if (next >= 0) {
+            out.append(arg);
+            next = appendArgument(out, template, next);
+        }
+        return finish(out, template, next);
+    }
+
+    private static StringBuilder start() {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        return out;
+    }
+
+    /**
+     * Copies the template from position {@code from} up to the next placeholder, which
+     * the caller fills in. Copies the rest of the template if there is no placeholder
+     * left.
+     *
+     * @return Where the template continues after the placeholder, or -1 if there was none.
+     */
+    private static int appendArgument(StringBuilder out, String template, int from) {
+        int placeholder = template.indexOf("{}", from);
+        if (placeholder < 0) {
+            out.append(template, from, template.length());
+            return -1;
+        }
+        out.append(template, from, placeholder);
+        return placeholder + 2;
+    }
+
+    // Copies whatever follows the last filled placeholder and returns the message
+    private static String finish(StringBuilder out, String template, int next) {
+        if (next >= 0) {
+            out.append(template, next, template.length());
+        }
+        String message = out.toString();
+        if (out.capacity() > MAX_RETAINED_LENGTH) {
+            BUFFER.remove();
+        }
+        return message;
+    }
+}
+
+/**
+ * Limits how often the same templated message is logged, to protect the hot path when
+ * an error repeats in a tight loop.
+ *
+ * Messages are keyed by their template; plain and Supplier messages are never
+ * limited, since their text usually differs from call to call. A template claims a
+ * slot in a fixed table the first time it is seen, probing a few slots past its hash
+ * when templates collide, so memory stays constant however many templates there are.
+ * A slot whose window is over and that has nothing left to report can be claimed by
+ * another template. Only when all probed slots belong to live templates does a new
+ * one share the budget of its home slot, and its suppressed messages are then
+ * reported under that slot's template.
+ *
+ * Each slot lets maxPerWindow messages through per window. Past that, messages are
+ * dropped, or kept with probability sampleRate, and counted. Once a window is full
+ * its count is only read, and suppressed messages go to a LongAdder, so threads
+ * hammering the same template don't fight over one counter. The counters of two
+ * slots are always at least 64 bytes apart, so threads logging different templates
+ * don't contend either.
+ *
+ * The suppressed count of a window is reported by the first message of the template
+ * after the window closes, or by Logger.shutdown(). A burst that simply stops is not
+ * reported until one of those happens.
+ */
+class LogRateLimiter {
+    /** Returned by acquire() when the message must be dropped. */
+    static final long DENIED = -1;
+
+    private static final int DEFAULT_SLOTS = 1024;
+    private static final int MAX_PROBES = 8;
+    // Longs per slot: 2 counters and 112 bytes of padding. The array itself is only
+    // 8-byte aligned, so a 64-byte stride could still put two slots on one line.
+    private static final int STRIDE = 16;
+    private static final int WINDOW_START = 0;
+    private static final int COUNT = 1;
+
+    private final int maxPerWindow;
+    private final long windowMillis;
+    private final double sampleRate;
+    private final int mask;
+    private final AtomicLongArray counters;
+    private final LongAdder[] suppressed;
+    private final AtomicReferenceArray<String> keys;  // template that owns each slot, null if free
+
+    /**
+     * Strict limit, with 1024 slots.
+     */
+    public LogRateLimiter(int maxPerWindow, long window, TimeUnit unit) {
+        this(maxPerWindow, window, unit, 0, DEFAULT_SLOTS);
+    }
+
+    /**
+     * @param maxPerWindow Messages per template let through in each window.
+     * @param window       Length of a window.
+     * @param unit         Unit of window.
+     * @param sampleRate   Probability, from 0 to 1, that a message over the limit is
+     *                     still logged.
+     * @param slots        Number of templates tracked separately, rounded up to a power of two.
+     */
+    public LogRateLimiter(int maxPerWindow, long window, TimeUnit unit, double sampleRate, int slots) {
+        if (maxPerWindow < 0 || window <= 0 || sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Invalid rate limit");
+        }
+        int size = Integer.highestOneBit(Math.max(2, slots) - 1) << 1;
+        this.maxPerWindow = maxPerWindow;
+        this.windowMillis = unit.toMillis(window);
+        this.sampleRate = sampleRate;
+        this.mask = size - 1;
+        this.counters = new AtomicLongArray(size * STRIDE);
+        this.suppressed = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            suppressed[i] = new LongAdder();
+        }
+        this.keys = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Counts a message against its template's budget.
+     *
+     * @return DENIED if the message must be dropped, otherwise how many messages of
+     *         this template were suppressed in the window that just closed, usually 0.
+     */
+    long acquire(String template) {
+        long now = System.currentTimeMillis();
+        int slot = slotOf(template, now);
+        int base = slot * STRIDE;
+        long windowStart = counters.get(base + WINDOW_START);
+        long report = 0;
+        if (now - windowStart >= windowMillis && counters.compareAndSet(base + WINDOW_START, windowStart, now)) {
+            // This thread opened the new window, counts racing with the reset may be lost
+            counters.set(base + COUNT, 0);
+            report = suppressed[slot].sumThenReset();
+        }
+        // A full window is only read from here on, so its cache line stays shared
+        if ((counters.get(base + COUNT) < maxPerWindow && counters.incrementAndGet(base + COUNT) <= maxPerWindow)
+                || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            return report;
+        }
+        suppressed[slot].increment();
+        return DENIED;
+    }
+
+    long windowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Hands every template with suppressed messages to the consumer and resets its
+     * count, for reporting before shutdown.
+     */
+    void drainSuppressed(BiConsumer<String, Long> consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            long count = suppressed[slot].sumThenReset();
+            if (count > 0) {
+                consumer.accept(keys.get(slot), count);
+            }
+        }
+    }
+
+    // The slot owned by the template, claiming a free or expired one on first use
+    private int slotOf(String template, long now) {
+        int hash = template.hashCode();
+        int home = (hash ^ (hash >>> 16)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            String owner = keys.get(slot);
+            if (owner == template || template.equals(owner)) {
+                return slot;
+            }
+            if (owner == null || isExpired(slot, now)) {
+                if (keys.compareAndSet(slot, owner, template)) {
+                    return slot;  // its window is over, so acquire() opens a fresh one
+                }
+                if (template.equals(keys.get(slot))) {
+                    return slot;  // another thread claimed it first for this template
+                }
+            }
+        }
+        return home;  // crowded, share the home slot's budget
+    }
+
+    // Past its window with no suppressed messages left to report under its template
+    private boolean isExpired(int slot, long now) {
+        return now - counters.get(slot * STRIDE + WINDOW_START) >= windowMillis && suppressed[slot].sum() == 0;
+    }
+}
+
+/**
+ * What an async logger does with a new event when its ring buffer is full.
+ */
+enum OverflowPolicy {
+    /** Wait until the consumer thread frees a slot. */
+    BLOCK,
+    /** Drop the new event. */
+    DROP,
+    /** Drop DEBUG and INFO events, wait for a slot for WARN and above. */
+    DISCARD_BELOW_WARN
+}
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer of preallocated log events.
+ *
+ * Every slot carries a sequence number. A producer claims the slot at the tail with a
+ * CAS, fills it in and publishes it by advancing the slot's sequence; the consumer
+ * frees it the same way. No locks are taken and no objects are allocated per event.
+ */
+class LogRingBuffer {
+    /**
+     * Receives events drained from the buffer.
+     */
+    interface EventHandler {
+        void onEvent(Logger logger, LogLevel level, String message, long timestampMillis);
+    }
+
+    private static final class Slot {
+        volatile long sequence;
+        Logger logger;
+        LogLevel level;
+        String message;
+        long timestampMillis;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();  // only advanced by the consumer
+
+    /**
+     * @param capacity Number of slots, rounded up to a power of two.
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+    }
+
+    /**
+     * Publishes an event. Safe to call from any number of threads.
+     *
+     * @return false if the buffer is full.
+     */
+    boolean offer(Logger logger, LogLevel level, String message, long timestampMillis) {
+        while (true) {
+            long position = tail.get();
+            Slot slot = slots[(int) (position & mask)];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slot.logger = logger;
+                    slot.level = level;
+                    slot.message = message;
+                    slot.timestampMillis = timestampMillis;
+                    slot.sequence = position + 1;  // publish
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;  // the consumer hasn't freed this slot yet
+            }
+            // Another producer claimed this position first, retry with the new tail
+        }
+    }
+
+    /**
+     * Hands the oldest published event to the handler and frees its slot.
+     * Must only be called by one thread at a time.
+     *
+     * @return false if there was nothing to consume.
+     */
+    boolean poll(EventHandler handler) {
+        long position = head.get();
+        Slot slot = slots[(int) (position & mask)];
+        if (slot.sequence != position + 1) {
+            return false;
+        }
+        Logger logger = slot.logger;
+        LogLevel level = slot.level;
+        String message = slot.message;
+        long timestampMillis = slot.timestampMillis;
+        slot.message = null;  // don't keep the message reachable from the buffer
+        slot.sequence = position + slots.length;  // free the slot for the next lap
+        head.lazySet(position + 1);
+        handler.onEvent(logger, level, message, timestampMillis);
+        return true;
+    }
+
+    /**
+     * Number of events claimed but not yet consumed.
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
+
+/**
+ * Moves log events from request threads to one consumer thread that formats them and
+ * calls the appenders, so the caller only pays for publishing into the ring buffer.
+ */
+class AsyncLogDispatcher {
+    private static final int SPINS_BEFORE_PARKING = 100;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final long FULL_PARK_NANOS = 10_000L;
+
+    private final LogRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final LogRingBuffer.EventHandler handler;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    /**
+     * @param bufferSize     Number of events that can wait for the consumer.
+     * @param overflowPolicy What to do when the buffer is full.
+     * @param handler        Formats and appends an event, called on the consumer thread.
+     */
+    AsyncLogDispatcher(int bufferSize, OverflowPolicy overflowPolicy, LogRingBuffer.EventHandler handler) {
+        this.buffer = new LogRingBuffer(bufferSize);
+        this.overflowPolicy = overflowPolicy;
+        this.handler = handler;
+        this.consumer = new Thread(this::consume, "async-logger");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Publishes an event, applying the overflow policy when the buffer is full.
+     */
+    void publish(Logger logger, LogLevel level, String message, long timestampMillis) {
+        if (!buffer.offer(logger, level, message, timestampMillis)) {
+            if (overflowPolicy == OverflowPolicy.DROP
+                    || (overflowPolicy == OverflowPolicy.DISCARD_BELOW_WARN && level.getLevel() < LogLevel.WARN.getLevel())) {
+                dropped.increment();
+                return;
+            }
+            while (!buffer.offer(logger, level, message, timestampMillis)) {
+                if (!running) {
+                    // Shut down while we waited, nobody is left to drain the buffer
+                    writeDirectly(logger, level, message, timestampMillis);
+                    return;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+        }
+        // The event is published before running is read, and shutdown clears running
+        // before its final drain, so if that drain could have missed the event we see it here
+        if (!running) {
+            drain();
+        }
+    }
+
+    /**
+     * Stops the consumer once it has drained every buffered event, and waits for it.
+     */
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    long droppedCount() {
+        return dropped.sum();
+    }
+
+    int queueDepth() {
+        return buffer.size();
+    }
+
+    private void consume() {
+        int idle = 0;
+        while (running) {
+            if (drain()) {
+                idle = 0;
+            } else if (++idle < SPINS_BEFORE_PARKING) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+    }
+
+    // Polls until the buffer is empty and returns whether there was anything. Every
+    // poll happens under this lock: after shutdown late events are drained by whoever
+    // gets here, possibly while the consumer is still finishing, so the lock keeps the
+    // buffer single-consumer
+    private synchronized boolean drain() {
+        boolean drained = false;
+        while (pollSafely()) {
+            drained = true;
+        }
+        return drained;
+    }
+
+    private synchronized void writeDirectly(Logger logger, LogLevel level, String message, long timestampMillis) {
+        drain();
+        handler.onEvent(logger, level, message, timestampMillis);
+    }
+
+    private boolean pollSafely() {
+        try {
+            return buffer.poll(handler);
+        } catch (RuntimeException e) {
+            // A failing appender must not kill the consumer thread
+            e.printStackTrace();
+            return true;
+        }
+    }
+}
+
+/**
+ * Opt-in metrics about the logging pipeline itself: events per level, messages
+ * dropped by rate limiting, time spent formatting and in each appender, bytes written
+ * and flushes, and, in async mode, the queue depth and dropped events.
+ *
+ * Everything is a LongAdder, so the threads that log never contend on a counter.
+ * Read the values programmatically, print toString(), or have dumpEvery() hand a
+ * report to a consumer periodically.
+ */
+class LoggerMetrics {
+    private final Logger root;
+    private final LongAdder[] events = new LongAdder[LogLevel.values().length];
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder formatCount = new LongAdder();
+    private final LongAdder formatNanos = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final Map<Appender, AppenderMetrics> appenders = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Calls and time spent in one appender's append().
+     */
+    static class AppenderMetrics {
+        final Appender appender;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        AppenderMetrics(Appender appender) {
+            this.appender = appender;
+        }
+
+        void record(long elapsedNanos) {
+            calls.increment();
+            nanos.add(elapsedNanos);
+        }
+
+        public long calls() {
+            return calls.sum();
+        }
+
+        public long totalNanos() {
+            return nanos.sum();
+        }
+
+        public double meanNanos() {
+            long count = calls();
+            return count == 0 ? 0 : (double) totalNanos() / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d mean=%.0fns", calls(), meanNanos());
+        }
+    }
+
+    LoggerMetrics(Logger root) {
+        this.root = root;
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new LongAdder();
+        }
+    }
+
+    void recordEvent(LogLevel level) {
+        events[level.ordinal()].increment();
+    }
+
+    void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    void recordFormat(long elapsedNanos) {
+        formatCount.increment();
+        formatNanos.add(elapsedNanos);
+    }
+
+    // Resolved when loggers rebuild their appender snapshots, never while logging
+    AppenderMetrics metricsFor(Appender appender) {
+        return appenders.computeIfAbsent(appender, AppenderMetrics::new);
+    }
+
+    /**
+     * Bytes handed to the OS without a write call, e.g. copied into a mapped file.
+     */
+    void recordBytes(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * One write or flush of the given number of bytes to the OS.
+     */
+    void recordFlush(long bytes) {
+        flushes.increment();
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Events that passed the level check and rate limiting.
+     */
+    public long events(LogLevel level) {
+        return events[level.ordinal()].sum();
+    }
+
+    public long rateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    public long formatCount() {
+        return formatCount.sum();
+    }
+
+    public long formatNanos() {
+        return formatNanos.sum();
+    }
+
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long flushCount() {
+        return flushes.sum();
+    }
+
+    /**
+     * Per-appender metrics, for every appender attached while metrics were enabled.
+     */
+    public Map<Appender, AppenderMetrics> appenderMetrics() {
+        return appenders;
+    }
+
+    /**
+     * Events waiting for the async consumer thread, 0 in synchronous mode.
+     */
+    public int queueDepth() {
+        return root.asyncQueueDepth();
+    }
+
+    /**
+     * Events dropped because the async ring buffer was full, over every async session.
+     */
+    public long droppedCount() {
+        return root.asyncDroppedCount();
+    }
+
+    /**
+     * Hands a report to the consumer every period, on a daemon thread. Replaces any
+     * earlier schedule.
+     */
+    public synchronized void dumpEvery(long period, TimeUnit unit, Consumer<String> out) {
+        stopDumping();
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "logger-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> out.accept(toString()), period, period, unit);
+    }
+
+    public synchronized void stopDumping() {
+        if (reporter != null) {
+            reporter.shutdown();
+            reporter = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("events");
+        for (LogLevel level : LogLevel.values()) {
+            report.append(' ').append(level.name()).append('=').append(events(level));
+        }
+        long formats = formatCount();
+        report.append(String.format(" rateLimited=%d format[calls=%d mean=%.0fns] bytes=%d flushes=%d queueDepth=%d dropped=%d",
+                rateLimitedCount(), formats, formats == 0 ? 0.0 : (double) formatNanos() / formats,
+                bytesWritten(), flushCount(), queueDepth(), droppedCount()));
+        for (Map.Entry<Appender, AppenderMetrics> appender : appenders.entrySet()) {
+            report.append(' ').append(appender.getKey().getClass().getSimpleName())
+                    .append('[').append(appender.getValue()).append(']');
+        }
+        return report.toString();
+    }
+}
+
+/**
+ * The core logger that manages logging operations.
+ *
+ * Loggers form a hierarchy by dot-separated name: "app.db" is a child of "app", and
+ * every top-level name is a child of the root logger returned by getInstance(). A
+ * logger without a level of its own inherits its parent's, and its messages go to its
+ * own appenders plus, while it is additive, to those of its ancestors. The effective
+ * level and appenders are precomputed whenever the configuration changes, so logging
+ * never walks the hierarchy. The formatter, async mode and binary mode are shared by
+ * the whole hierarchy and controlled through any of its loggers.
+ */
+class Logger {
+    // Guards the configuration of every logger and the shape of the hierarchy
+    private static final Object CONFIG_LOCK = new Object();
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Logger parent;  // null for the root
+    private final Logger root;
+    private final Formatter formatter;
+
+    // Configuration, guarded by CONFIG_LOCK
+    private final List<Logger> children = new ArrayList<>();
+    private LogLevel configuredLevel;  // null to inherit the parent's level
+    private boolean additive = true;
+    private Appender[] appenders = new Appender[0];
+    private LogRateLimiter rateLimiter;  // null to inherit the parent's
+
+    // Derived from the configuration of this logger and its ancestors. All are replaced
+    // as a whole on every change, so log() reads them without locking.
+    private volatile int effectiveLevel;
+    private volatile Appender[] effectiveAppenders;
+    // The same appenders paired with their metrics, null while metrics are off
+    private volatile LoggerMetrics.AppenderMetrics[] effectiveAppenderMetrics;
+    private volatile LogRateLimiter effectiveRateLimiter;
+
+    // Background dispatcher, null while logging synchronously. Only used on the root.
+    private volatile AsyncLogDispatcher asyncDispatcher;
+    private volatile long droppedByStoppedDispatchers;  // written under the root's lock
+
+    // Receives every event in binary mode instead of the formatter and appenders, null in
+    // text mode. Only used on the root.
+    private volatile BinaryLogAppender binaryAppender;
+
+    // Pipeline metrics, null until enableMetrics(). Only used on the root.
+    private volatile LoggerMetrics metrics;
+
+    // Reusable per-thread buffer that each message is formatted into
+    private static final int MAX_RETAINED_LINE = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> LINE_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /**
+     * Private constructor for the root logger, to enforce singleton pattern.
+     *
+     * @param level     The minimum logging level.
+     * @param formatter The formatter to use for log messages.
+     */
+    private Logger(LogLevel level, Formatter formatter) {
+        this.name = "";
+        this.parent = null;
+        this.root = this;
+        this.formatter = formatter;
+        this.configuredLevel = level;
+        refresh();
+    }
+
+    /**
+     * Constructor for a named logger that inherits everything from its parent.
+     */
+    private Logger(String name, Logger parent) {
+        this.name = name;
+        this.parent = parent;
+        this.root = parent.root;
+        this.formatter = parent.formatter;
+        refresh();
+    }
+
+    /**
+     * Holds the singleton instance. The JVM initializes it, exactly once, the first
+     * time getInstance() touches this class, so getInstance() needs no lock.
+     */
+    private static final class Holder {
+        static final Logger INSTANCE = createDefault();
+
+        private static Logger createDefault() {
+            // Default configuration: DEBUG level with the SimpleFormatter layout, formatted without garbage
+            Logger logger = new Logger(LogLevel.DEBUG, new GarbageFreeFormatter());
+            // Add default ConsoleAppender
+            logger.addAppender(new ConsoleAppender());
+            LOGGERS.put(logger.name, logger);
+            return logger;
+        }
+    }
+
+    /**
+     * Retrieves the singleton instance of the Logger, the root of the hierarchy.
+     *
+     * @return The Logger instance.
+     */
+    public static Logger getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // or, with a lazily created volatile instance and double-checked locking
+    /**
+    * private static volatile Logger logger;
+    *
+    * public static Logger getLogger(){
+    *     if(logger == null){
+    *        synchronized(Logger.class)
+    *        {
+    *            if(logger == null) logger = new Logger();
+    *        }
+    *     }
+    *     return logger;
+    *}
+    */
+
+    /**
+     * Retrieves the logger with the given dot-separated name, creating it and any
+     * missing ancestors. The empty name is the root logger.
+     *
+     * @param name The logger name, e.g. "app.db".
+     * @return The same Logger for every call with this name.
+     */
+    public static Logger getLogger(String name) {
+        Logger rootLogger = getInstance();  // initialize the root before taking the lock
+        Logger logger = LOGGERS.get(name);
+        if (logger != null) {
+            return logger;
+        }
+        synchronized (CONFIG_LOCK) {
+            logger = LOGGERS.get(name);
+            if (logger == null) {
+                int dot = name.lastIndexOf('.');
+                Logger parent = dot < 0 ? rootLogger : getLogger(name.substring(0, dot));
+                logger = new Logger(name, parent);
+                parent.children.add(logger);
+                LOGGERS.put(name, logger);
+            }
+            return logger;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds an appender to the logger. Messages being logged concurrently see either
+     * the old or the new set of appenders.
+     *
+     * @param appender The appender to add.
+     */
+    public void addAppender(Appender appender) {
+        synchronized (CONFIG_LOCK) {
+            appender.setMetrics(root.metrics);
+            Appender[] updated = Arrays.copyOf(appenders, appenders.length + 1);
+            updated[appenders.length] = appender;
+            appenders = updated;
+            refresh();
+        }
+    }
+
+    /**
+     * Removes an appender from the logger.
+     *
+     * @param appender The appender to remove.
+     * @return false if it wasn't added to this logger.
+     */
+    public boolean removeAppender(Appender appender) {
+        synchronized (CONFIG_LOCK) {
+            for (int i = 0; i < appenders.length; i++) {
+                if (appenders[i] == appender) {
+                    Appender[] updated = new Appender[appenders.length - 1];
+                    System.arraycopy(appenders, 0, updated, 0, i);
+                    System.arraycopy(appenders, i + 1, updated, i, appenders.length - i - 1);
+                    appenders = updated;
+                    refresh();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Sets whether messages also go to the appenders of the ancestors. On by default.
+     */
+    public void setAdditive(boolean additive) {
+        synchronized (CONFIG_LOCK) {
+            this.additive = additive;
+            refresh();
+        }
+    }
+
+    /**
+     * Limits how often the same template is logged by this logger and the descendants
+     * that don't have a limiter of their own. Pass null to inherit the parent's again,
+     * or, on the root, to log without limits.
+     */
+    public void setRateLimiter(LogRateLimiter limiter) {
+        synchronized (CONFIG_LOCK) {
+            this.rateLimiter = limiter;
+            refresh();
+        }
+    }
+
+    /**
+     * Switches to binary mode: events go to the given appender as template ids and raw
+     * arguments, skipping the formatter and the text appenders. It writes on the
+     * caller's thread, also while async logging is on, since encoding costs less
+     * than publishing to the ring buffer. Pass null to return to text.
+     */
+    public void useBinaryAppender(BinaryLogAppender appender) {
+        if (appender != null) {
+            appender.setMetrics(root.metrics);
+        }
+        BinaryLogAppender previous = root.binaryAppender;
+        root.binaryAppender = appender;
+        if (previous != null) {
+            previous.flush();
+        }
+    }
+
+    /**
+     * Starts collecting metrics about the logging pipeline of the whole hierarchy.
+     * Until this is called, logging doesn't time or count anything.
+     *
+     * @return The metrics, the same instance on every call.
+     */
+    public LoggerMetrics enableMetrics() {
+        synchronized (CONFIG_LOCK) {
+            if (root.metrics == null) {
+                LoggerMetrics created = new LoggerMetrics(root);
+                for (Logger logger : LOGGERS.values()) {
+                    for (Appender appender : logger.appenders) {
+                        appender.setMetrics(created);
+                    }
+                }
+                BinaryLogAppender binary = root.binaryAppender;
+                if (binary != null) {
+                    binary.setMetrics(created);
+                }
+                root.metrics = created;
+                root.refresh();
+            }
+            return root.metrics;
+        }
+    }
+
+    int asyncQueueDepth() {
+        AsyncLogDispatcher dispatcher = root.asyncDispatcher;
+        return dispatcher == null ? 0 : dispatcher.queueDepth();
+    }
+
+    long asyncDroppedCount() {
+        AsyncLogDispatcher dispatcher = root.asyncDispatcher;
+        return root.droppedByStoppedDispatchers + (dispatcher == null ? 0 : dispatcher.droppedCount());
+    }
+
+    /**
+     * Switches to asynchronous logging: callers publish events into a preallocated
+     * ring buffer and a dedicated thread formats them and calls the appenders.
+     *
+     * @param bufferSize     Number of events that can wait for the consumer thread.
+     * @param overflowPolicy What to do with new events while the buffer is full.
+     */
+    public void startAsync(int bufferSize, OverflowPolicy overflowPolicy) {
+        synchronized (root) {
+            if (root.asyncDispatcher == null) {
+                root.asyncDispatcher = new AsyncLogDispatcher(bufferSize, overflowPolicy,
+                        (logger, level, message, timestampMillis) -> logger.write(level, message, timestampMillis));
+            }
+        }
+    }
+
+    /**
+     * Stops asynchronous logging after writing out every buffered event, then flushes
+     * the appenders of every logger. Later messages are logged synchronously again.
+     */
+    public void shutdown() {
+        synchronized (root) {
+            AsyncLogDispatcher dispatcher = root.asyncDispatcher;
+            if (dispatcher != null) {
+                root.asyncDispatcher = null;
+                dispatcher.shutdown();
+                root.droppedByStoppedDispatchers += dispatcher.droppedCount();
+            }
+            List<Appender> allAppenders = new ArrayList<>();
+            List<Logger> limitedLoggers = new ArrayList<>();
+            synchronized (CONFIG_LOCK) {
+                for (Logger logger : LOGGERS.values()) {
+                    allAppenders.addAll(Arrays.asList(logger.appenders));
+                    if (logger.rateLimiter != null) {
+                        limitedLoggers.add(logger);
+                    }
+                }
+            }
+            // Windows still open have nobody left to report what they suppressed
+            for (Logger logger : limitedLoggers) {
+                logger.rateLimiter.drainSuppressed(
+                        (key, suppressed) -> logger.reportSuppressed(LogLevel.WARN, key, suppressed));
+            }
+            for (Appender appender : allAppenders) {
+                appender.flush();
+            }
+            BinaryLogAppender binary = root.binaryAppender;
+            if (binary != null) {
+                binary.flush();
+            }
+        }
+    }
+
+    /**
+     * Sets the minimum logging level of this logger and of the descendants that
+     * don't have a level of their own.
+     *
+     * @param level The logging level to set, or null for a named logger to inherit
+     *              its parent's level again.
+     */
+    public void setLogLevel(LogLevel level) {
+        if (level == null && parent == null) {
+            throw new IllegalArgumentException("The root logger needs a level");
+        }
+        synchronized (CONFIG_LOCK) {
+            this.configuredLevel = level;
+            refresh();
+        }
+    }
+
+    // Recomputes the effective settings of this logger and its descendants, under CONFIG_LOCK
+    private void refresh() {
+        effectiveLevel = configuredLevel != null ? configuredLevel.getLevel() : parent.effectiveLevel;
+        effectiveRateLimiter = rateLimiter != null || parent == null ? rateLimiter : parent.effectiveRateLimiter;
+        if (parent == null || !additive) {
+            effectiveAppenders = appenders;
+        } else {
+            Appender[] inherited = parent.effectiveAppenders;
+            Appender[] combined = Arrays.copyOf(appenders, appenders.length + inherited.length);
+            System.arraycopy(inherited, 0, combined, appenders.length, inherited.length);
+            effectiveAppenders = combined;
+        }
+        LoggerMetrics currentMetrics = root.metrics;
+        if (currentMetrics == null) {
+            effectiveAppenderMetrics = null;
+        } else {
+            Appender[] current = effectiveAppenders;
+            LoggerMetrics.AppenderMetrics[] timed = new LoggerMetrics.AppenderMetrics[current.length];
+            for (int i = 0; i < current.length; i++) {
+                timed[i] = currentMetrics.metricsFor(current[i]);
+            }
+            effectiveAppenderMetrics = timed;
+        }
+        for (Logger child : children) {
+            child.refresh();
+        }
+    }
+
+    /**
+     * Whether messages at the given level are currently logged. The overloads below
+     * check this before formatting anything, so a disabled call only costs this check.
+     */
+    public boolean isEnabled(LogLevel level) {
+        return level.getLevel() >= effectiveLevel;
+    }
+
+    // Logging methods for various levels. Templates use {} placeholders, see
+    // MessageTemplate. Primitive overloads format their arguments without boxing, and
+    // the one- and two-argument overloads avoid the varargs array.
+    public void debug(String message) {
+        log(LogLevel.DEBUG, message);
+    }
+
+    public void debug(String template, Object arg) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, template, arg);
+        }
+    }
+
+    public void debug(String template, Object arg1, Object arg2) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, template, arg1, arg2);
+        }
+    }
+
+    public void debug(String template, Object... args) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, template, args);
+        }
+    }
+
+    public void debug(String template, long arg) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, template, arg);
+        }
+    }
+
+    public void debug(String template, long arg1, long arg2) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, template, arg1, arg2);
+        }
+    }
+
+    public void debug(String template, double arg) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, template, arg);
+        }
+    }
+
+    public void debug(String template, char arg) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, template, arg);
+        }
+    }
+
+    public void debug(String template, float arg) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, template, arg);
+        }
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(LogLevel.DEBUG, message.get());
+        }
+    }
+
+    public void info(String message) {
+        log(LogLevel.INFO, message);
+    }
+
+    public void info(String template, Object arg) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, template, arg);
+        }
+    }
+
+    public void info(String template, Object arg1, Object arg2) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, template, arg1, arg2);
+        }
+    }
+
+    public void info(String template, Object... args) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, template, args);
+        }
+    }
+
+    public void info(String template, long arg) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, template, arg);
+        }
+    }
+
+    public void info(String template, long arg1, long arg2) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, template, arg1, arg2);
+        }
+    }
+
+    public void info(String template, double arg) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, template, arg);
+        }
+    }
+
+    public void info(String template, char arg) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, template, arg);
+        }
+    }
+
+    public void info(String template, float arg) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, template, arg);
+        }
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(LogLevel.INFO, message.get());
+        }
+    }
+
+    public void warn(String message) {
+        log(LogLevel.WARN, message);
+    }
+
+    public void warn(String template, Object arg) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, template, arg);
+        }
+    }
+
+    public void warn(String template, Object arg1, Object arg2) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, template, arg1, arg2);
+        }
+    }
+
+    public void warn(String template, Object... args) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, template, args);
+        }
+    }
+
+    public void warn(String template, long arg) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, template, arg);
+        }
+    }
+
+    public void warn(String template, long arg1, long arg2) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, template, arg1, arg2);
+        }
+    }
+
+    public void warn(String template, double arg) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, template, arg);
+        }
+    }
+
+    public void warn(String template, char arg) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, template, arg);
+        }
+    }
+
+    public void warn(String template, float arg) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, template, arg);
+        }
+    }
+
+    public void warn(Supplier<String> message) {
+        if (isEnabled(LogLevel.WARN)) {
+            log(LogLevel.WARN, message.get());
+        }
+    }
+
+    public void error(String message) {
+        log(LogLevel.ERROR, message);
+    }
+
+    public void error(String template, Object arg) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, template, arg);
+        }
+    }
+
+    public void error(String template, Object arg1, Object arg2) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, template, arg1, arg2);
+        }
+    }
+
+    public void error(String template, Object... args) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, template, args);
+        }
+    }
+
+    public void error(String template, long arg) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, template, arg);
+        }
+    }
+
+    public void error(String template, long arg1, long arg2) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, template, arg1, arg2);
+        }
+    }
+
+    public void error(String template, double arg) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, template, arg);
+        }
+    }
+
+    public void error(String template, char arg) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, template, arg);
+        }
+    }
+
+    public void error(String template, float arg) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, template, arg);
+        }
+    }
+
+    public void error(Supplier<String> message) {
+        if (isEnabled(LogLevel.ERROR)) {
+            log(LogLevel.ERROR, message.get());
+        }
+    }
+
+    public void fatal(String message) {
+        log(LogLevel.FATAL, message);
+    }
+
+    public void fatal(String template, Object arg) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, template, arg);
+        }
+    }
+
+    public void fatal(String template, Object arg1, Object arg2) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, template, arg1, arg2);
+        }
+    }
+
+    public void fatal(String template, Object... args) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, template, args);
+        }
+    }
+
+    public void fatal(String template, long arg) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, template, arg);
+        }
+    }
+
+    public void fatal(String template, long arg1, long arg2) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, template, arg1, arg2);
+        }
+    }
+
+    public void fatal(String template, double arg) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, template, arg);
+        }
+    }
+
+    public void fatal(String template, char arg) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, template, arg);
+        }
+    }
+
+    public void fatal(String template, float arg) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, template, arg);
+        }
+    }
+
+    public void fatal(Supplier<String> message) {
+        if (isEnabled(LogLevel.FATAL)) {
+            log(LogLevel.FATAL, message.get());
+        }
+    }
+
+    /**
+     * Logs a message at the specified logging level.
+     *
+     * @param level   The severity level of the log.
+     * @param message The message to log.
+     */
+    // Plain and Supplier messages: their text is rarely a stable key, so they are
+    // counted but never rate limited
+    private void log(LogLevel level, String message) {
+        if (isEnabled(level)) {
+            LoggerMetrics currentMetrics = root.metrics;
+            if (currentMetrics != null) {
+                currentMetrics.recordEvent(level);
+            }
+            dispatch(level, message);
+        }
+    }
+
+    // Applies the rate limiter, if any, reporting what it suppressed in the window that
+    // just closed. Every enabled templated event passes through here once, so it is also
+    // counted here.
+    private boolean permits(LogLevel level, String template) {
+        LogRateLimiter limiter = effectiveRateLimiter;
+        LoggerMetrics currentMetrics = root.metrics;
+        if (limiter != null) {
+            long suppressed = limiter.acquire(template);
+            if (suppressed == LogRateLimiter.DENIED) {
+                if (currentMetrics != null) {
+                    currentMetrics.recordRateLimited();
+                }
+                return false;
+            }
+            if (suppressed > 0) {
+                reportSuppressed(level, template, suppressed);
+            }
+        }
+        if (currentMetrics != null) {
+            currentMetrics.recordEvent(level);
+        }
+        return true;
+    }
+
+    private void reportSuppressed(LogLevel level, String key, long suppressed) {
+        dispatch(level, String.format("Suppressed %,d similar messages: %s", suppressed, key));
+    }
+
+    // Hands an enabled, permitted message to binary mode, the async consumer or the appenders
+    private void dispatch(LogLevel level, String message) {
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.message(level, System.currentTimeMillis(), message);
+            return;
+        }
+        AsyncLogDispatcher dispatcher = root.asyncDispatcher;
+        if (dispatcher != null) {
+            dispatcher.publish(this, level, message, System.currentTimeMillis());
+        } else {
+            write(level, message, System.currentTimeMillis());
+        }
+    }
+
+    // Template overloads of log(), called once the level is known to be enabled. The
+    // template is the rate limiting key. In binary mode the raw arguments are recorded,
+    // otherwise the template is filled in.
+    private void log(LogLevel level, String template, Object arg) {
+        if (!permits(level, template)) {
+            return;
+        }
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.event(level, System.currentTimeMillis(), template, arg);
+        } else {
+            dispatch(level, MessageTemplate.format(template, arg));
+        }
+    }
+
+    private void log(LogLevel level, String template, Object arg1, Object arg2) {
+        if (!permits(level, template)) {
+            return;
+        }
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.event(level, System.currentTimeMillis(), template, arg1, arg2);
+        } else {
+            dispatch(level, MessageTemplate.format(template, arg1, arg2));
+        }
+    }
+
+    private void log(LogLevel level, String template, Object[] args) {
+        if (!permits(level, template)) {
+            return;
+        }
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.event(level, System.currentTimeMillis(), template, args);
+        } else {
+            dispatch(level, MessageTemplate.format(template, args));
+        }
+    }
+
+    private void log(LogLevel level, String template, long arg) {
+        if (!permits(level, template)) {
+            return;
+        }
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.event(level, System.currentTimeMillis(), template, arg);
+        } else {
+            dispatch(level, MessageTemplate.format(template, arg));
+        }
+    }
+
+    private void log(LogLevel level, String template, long arg1, long arg2) {
+        if (!permits(level, template)) {
+            return;
+        }
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.event(level, System.currentTimeMillis(), template, arg1, arg2);
+        } else {
+            dispatch(level, MessageTemplate.format(template, arg1, arg2));
+        }
+    }
+
+    private void log(LogLevel level, String template, double arg) {
+        if (!permits(level, template)) {
+            return;
+        }
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.event(level, System.currentTimeMillis(), template, arg);
+        } else {
+            dispatch(level, MessageTemplate.format(template, arg));
+        }
+    }
+
+    private void log(LogLevel level, String template, char arg) {
+        if (!permits(level, template)) {
+            return;
+        }
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.event(level, System.currentTimeMillis(), template, arg);
+        } else {
+            dispatch(level, MessageTemplate.format(template, arg));
+        }
+    }
+
+    private void log(LogLevel level, String template, float arg) {
+        if (!permits(level, template)) {
+            return;
+        }
+        BinaryLogAppender binary = root.binaryAppender;
+        if (binary != null) {
+            binary.event(level, System.currentTimeMillis(), template, arg);
+        } else {
+            dispatch(level, MessageTemplate.format(template, arg));
+        }
+    }
+
+    /**
+     * Formats a message and hands it to every appender. Runs on the caller's thread
+     * in synchronous mode and on the consumer thread in async mode.
+     */
+    private void write(LogLevel level, String message, long timestampMillis) {
+        StringBuilder formattedMessage = LINE_BUFFER.get();
+        formattedMessage.setLength(0);
+        LoggerMetrics.AppenderMetrics[] timedAppenders = effectiveAppenderMetrics;
+        if (timedAppenders == null) {
+            formatter.formatTo(level, message, timestampMillis, formattedMessage);
+            for (Appender appender : effectiveAppenders) {
+                appender.append(level, formattedMessage);
+            }
+        } else {
+            long start = System.nanoTime();
+            formatter.formatTo(level, message, timestampMillis, formattedMessage);
+            long end = System.nanoTime();
+            root.metrics.recordFormat(end - start);
+            for (LoggerMetrics.AppenderMetrics timed : timedAppenders) {
+                start = end;
+                timed.appender.append(level, formattedMessage);
+                end = System.nanoTime();
+                timed.record(end - start);
+            }
+        }
+        if (formattedMessage.capacity() > MAX_RETAINED_LINE) {
+            LINE_BUFFER.remove();  // don't keep a huge buffer around after one huge message
         }
     }
 }